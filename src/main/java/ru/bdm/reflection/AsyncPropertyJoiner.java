@@ -0,0 +1,104 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static java.util.function.Function.identity;
+import static ru.bdm.reflection.PropertyJoiner.AsyncPropertyExtractor;
+import static ru.bdm.reflection.PropertyJoiner.Mode;
+
+/**
+ * Joins properties provided by an {@link AsyncPropertyExtractor}. Extraction of all joined properties
+ * of all objects is started at once on the executor, a getter of a joined property waits for its own value only.
+ */
+public class AsyncPropertyJoiner {
+
+    private final PropertyJoiner joiner;
+    private final AsyncPropertyExtractor extractor;
+    private final Executor executor;
+
+    public AsyncPropertyJoiner(
+            final @Nonnull AsyncPropertyExtractor extractor,
+            final @Nonnull Executor executor,
+            final @Nonnull String... properties
+    ) {
+        this(Mode.INVOCATION_HANDLER, extractor, executor, properties);
+    }
+
+    public AsyncPropertyJoiner(
+            final @Nonnull Mode mode,
+            final @Nonnull AsyncPropertyExtractor extractor,
+            final @Nonnull Executor executor,
+            final @Nonnull String... properties
+    ) {
+        this.joiner = new PropertyJoiner(mode, (obj, property) -> {
+            throw new IllegalStateException("property " + property + " is not extracted");
+        }, properties);
+        this.extractor = extractor;
+        this.executor = executor;
+    }
+
+    /**
+     * @return executor with a virtual thread per task if the JVM supports them, otherwise a pool of a daemon thread
+     * per processor: extractors blocking their threads need an executor with as many threads as the extractions
+     * expected to run concurrently
+     */
+    public static Executor defaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    public <T> List<T> joinProperties(final @Nonnull Collection<? extends T> objects) {
+        final List<T> result = new ArrayList<>(objects.size());
+        for (final T t : objects) {
+            final Map<String, CompletableFuture<Object>> futures = new HashMap<>();
+            for (final String property : joiner.getProperties()) {
+                futures.put(property, extract(t, property));
+            }
+            result.add(joiner.joinProperties(t, (obj, property) -> await(futures.get(property))));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object> extract(final Object obj, final String property) {
+        return CompletableFuture
+                .supplyAsync(() -> (CompletableFuture<Object>) extractor.get(obj, property), executor)
+                .thenCompose(identity());
+    }
+
+    private static Object await(final CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class DefaultExecutorHolder {
+        static final Executor EXECUTOR = createDefaultExecutor();
+
+        private static Executor createDefaultExecutor() {
+            try {
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (final ReflectiveOperationException e) {
+                // objects times properties tasks are submitted at once, the number of threads is bounded
+                return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                    final Thread thread = new Thread(runnable, AsyncPropertyJoiner.class.getSimpleName());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import static java.util.Objects.requireNonNull;
+import static ru.bdm.reflection.PropertyJoiner.PropertyExtractor;
+
+/**
+ * Caches values of another extractor by (key of the object, property), so proxies of the same object created
+ * by one or several joiners sharing this extractor don't extract a property again.
+ * <p>
+ * By default objects are keys by identity (and are kept reachable while cached), a key function like
+ * {@code Entity::getId} shares values between different instances of the same entity (of the same class).
+ * The cache is split into up to 16 segments sharing the maximum size, each evicts its least recently used
+ * entries when its share is exceeded, entries also expire
+ * after the given time since they were extracted. Values are extracted outside of the locks, so concurrent
+ * misses on the same property may call the extractor more than once. {@code null} values are cached.
+ */
+public class CachingPropertyExtractor implements PropertyExtractor {
+
+    private static final int SEGMENTS = 16;
+    private static final Object NULL = new Object();
+
+    private final PropertyExtractor extractor;
+    private final Function<Object, ?> keyFunction;
+    private final long expireAfterWriteNanos;
+    private final LongSupplier ticker;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public CachingPropertyExtractor(final @Nonnull PropertyExtractor extractor, final int maximumSize) {
+        this(extractor, null, maximumSize, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param keyFunction       key of an object, {@code null} to use the identity of the object
+     * @param expireAfterWrite  0 for entries that don't expire
+     */
+    public CachingPropertyExtractor(
+            final @Nonnull PropertyExtractor extractor,
+            final Function<Object, ?> keyFunction,
+            final int maximumSize,
+            final long expireAfterWrite,
+            final @Nonnull TimeUnit unit
+    ) {
+        this(extractor, keyFunction, maximumSize, unit.toNanos(expireAfterWrite), System::nanoTime);
+    }
+
+    CachingPropertyExtractor(
+            final PropertyExtractor extractor,
+            final Function<Object, ?> keyFunction,
+            final int maximumSize,
+            final long expireAfterWriteNanos,
+            final LongSupplier ticker
+    ) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximum size must be positive: " + maximumSize);
+        }
+        if (expireAfterWriteNanos < 0) {
+            throw new IllegalArgumentException("expiration time can't be negative: " + expireAfterWriteNanos);
+        }
+        this.extractor = requireNonNull(extractor);
+        this.keyFunction = keyFunction;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.ticker = ticker;
+        // a power of two not exceeding the maximum size, so every segment holds at least one entry
+        this.segments = new Segment[Math.min(SEGMENTS, Integer.highestOneBit(maximumSize))];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(maximumSize / segments.length + (i < maximumSize % segments.length ? 1 : 0));
+        }
+    }
+
+    @Override
+    public Object get(final Object obj, final String property) {
+        final Key key = keyFunction == null
+                ? new Key(null, obj, property, true)
+                : new Key(obj.getClass(), keyFunction.apply(obj), property, false);
+        final Segment segment = segments[(key.hash ^ (key.hash >>> 16)) & (segments.length - 1)];
+        final long now = expireAfterWriteNanos == 0 ? 0 : ticker.getAsLong();
+        final Object cached = segment.get(key, now);
+        if (cached != null) {
+            hits.increment();
+            return cached == NULL ? null : cached;
+        }
+        misses.increment();
+        final Object value = extractor.get(obj, property);
+        segment.put(key, value == null ? NULL : value, now);
+        return value;
+    }
+
+    public void invalidateAll() {
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        Stats(final long hits, final long misses, final long evictions, final long expirations) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return entries removed because of the maximum size
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public double getHitRate() {
+            final long requests = hits + misses;
+            return requests == 0 ? 1 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", expirations=" + expirations;
+        }
+    }
+
+    private final class Segment {
+        private final int maximumSize;
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        Segment(final int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        synchronized Object get(final Key key, final long now) {
+            final Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (isExpired(entry, now)) {
+                entries.remove(key);
+                expirations.increment();
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(final Key key, final Object value, final long now) {
+            entries.put(key, new Entry(value, now));
+            if (entries.size() <= maximumSize) {
+                return;
+            }
+            // the least recently used entries go first, expired ones are dropped on the way
+            final Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maximumSize && iterator.hasNext()) {
+                final Entry eldest = iterator.next();
+                iterator.remove();
+                if (isExpired(eldest, now)) {
+                    expirations.increment();
+                } else {
+                    evictions.increment();
+                }
+            }
+        }
+
+        private boolean isExpired(final Entry entry, final long now) {
+            return expireAfterWriteNanos != 0 && now - entry.written >= expireAfterWriteNanos;
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long written;
+
+        Entry(final Object value, final long written) {
+            this.value = value;
+            this.written = written;
+        }
+    }
+
+    private static final class Key {
+        /**
+         * class of the object for keys returned by the key function, null for identity keys
+         */
+        final Class<?> type;
+        final Object key;
+        final String property;
+        final boolean identity;
+        final int hash;
+
+        Key(final Class<?> type, final Object key, final String property, final boolean identity) {
+            this.type = type;
+            this.key = key;
+            this.property = property;
+            this.identity = identity;
+            this.hash = 31 * (31 * (type == null ? 0 : type.hashCode())
+                    + (identity ? System.identityHashCode(key) : key == null ? 0 : key.hashCode()))
+                    + property.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return hash == that.hash
+                    && type == that.type
+                    && property.equals(that.property)
+                    && (identity ? key == that.key : key == null ? that.key == null : key.equals(that.key));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static org.apache.commons.lang3.ClassUtils.primitiveToWrapper;
+
+/**
+ * Extracts single-valued paths of a list of objects into typed columns: {@code int[]} for integral types up to
+ * {@code int}, chars and booleans (as 0/1), {@code long[]} for longs and dates (as millis), {@code double[]}
+ * for other numbers and dictionary-encoded strings for everything else (enums by name). Null values,
+ * including nulls in the middle of a path, are marked in a bitmap of the column. Properties of numeric primitive
+ * types are read into the columns without boxing.
+ * <p>
+ * Columns are filled in the order of the list; {@link #extractParallel(List)} splits the list by ranges
+ * between the threads of the common fork/join pool and produces the same columns. Dictionaries of the ranges
+ * are merged afterwards, so it pays off only with several cores: with a single one it is the same as
+ * {@link #extract(List)}.
+ */
+public final class ColumnExtractor<T> {
+
+    /**
+     * Items per parallel task, a multiple of 64 so that tasks never share a word of a null bitmap.
+     */
+    private static final int CHUNK_SIZE = 64 * 64;
+
+    private final PathAccessor[] accessors;
+    private final ColumnType[] types;
+    /**
+     * columns of numeric primitive properties, read by {@link PathAccessor#readLong} and {@link PathAccessor#readDouble}
+     */
+    private final boolean[] primitives;
+
+    public ColumnExtractor(final @Nonnull Class<T> type, final @Nonnull String... paths) {
+        if (paths.length == 0) {
+            throw new IllegalArgumentException("no paths defined");
+        }
+        this.accessors = PathAccessor.compile(type, paths);
+        this.types = new ColumnType[paths.length];
+        this.primitives = new boolean[paths.length];
+        for (int i = 0; i < accessors.length; i++) {
+            if (accessors[i].isMultiValued()) {
+                throw new IllegalArgumentException("path " + paths[i] + " is multi-valued");
+            }
+            types[i] = ColumnType.of(accessors[i].getValueType());
+            primitives[i] = types[i] != ColumnType.STRING && accessors[i].hasPrimitiveReader();
+        }
+    }
+
+    public Columns extract(final @Nonnull List<? extends T> items) {
+        final List<? extends T> list = randomAccess(items);
+        final Column[] columns = createColumns(list.size());
+        final Dictionary[] dictionaries = createDictionaries();
+        fill(list, columns, dictionaries, 0, list.size());
+        return new Columns(list.size(), columns, dictionaries);
+    }
+
+    public Columns extractParallel(final @Nonnull List<? extends T> items) {
+        final List<? extends T> list = randomAccess(items);
+        final int size = list.size();
+        final int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks <= 1 || ForkJoinPool.getCommonPoolParallelism() <= 1) {
+            return extract(list);
+        }
+        final Column[] columns = createColumns(size);
+        final Dictionary[][] dictionaries = new Dictionary[chunks][];
+        ForkJoinPool.commonPool().invoke(new ChunkAction(0, chunks, chunk -> {
+            dictionaries[chunk] = createDictionaries();
+            fill(list, columns, dictionaries[chunk], chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE));
+        }));
+        // dictionaries of the chunks are merged in the list order, so codes are the same as of extract
+        final int[][][] remaps = new int[chunks][][];
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            remaps[chunk] = new int[columns.length][];
+            for (int i = 0; i < columns.length; i++) {
+                if (dictionaries[0][i] != null) {
+                    remaps[chunk][i] = dictionaries[0][i].merge(dictionaries[chunk][i]);
+                }
+            }
+        }
+        ForkJoinPool.commonPool().invoke(new ChunkAction(1, chunks, chunk -> {
+            for (int i = 0; i < columns.length; i++) {
+                if (remaps[chunk][i] != null) {
+                    ((StringColumn) columns[i]).remap(
+                            remaps[chunk][i], chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE)
+                    );
+                }
+            }
+        }));
+        return new Columns(size, columns, dictionaries[0]);
+    }
+
+    private static <T> List<? extends T> randomAccess(final List<? extends T> items) {
+        return items instanceof RandomAccess ? items : new ArrayList<>(items);
+    }
+
+    private Column[] createColumns(final int size) {
+        final Column[] columns = new Column[accessors.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = types[i].create(accessors[i].getPath(), size);
+        }
+        return columns;
+    }
+
+    private Dictionary[] createDictionaries() {
+        final Dictionary[] dictionaries = new Dictionary[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == ColumnType.STRING) {
+                dictionaries[i] = new Dictionary();
+            }
+        }
+        return dictionaries;
+    }
+
+    private void fill(
+            final List<? extends T> items,
+            final Column[] columns,
+            final Dictionary[] dictionaries,
+            final int from,
+            final int to
+    ) {
+        for (int row = from; row < to; row++) {
+            final T item = items.get(row);
+            for (int i = 0; i < columns.length; i++) {
+                if (primitives[i]) {
+                    final Object owner = item == null ? null : accessors[i].owner(item);
+                    if (owner == null) {
+                        columns[i].setNull(row);
+                    } else {
+                        columns[i].setPrimitive(row, accessors[i], owner);
+                    }
+                    continue;
+                }
+                final Object value = item == null ? null : accessors[i].get(item);
+                if (value == null) {
+                    columns[i].setNull(row);
+                } else {
+                    columns[i].set(row, value, dictionaries[i]);
+                }
+            }
+        }
+    }
+
+    private enum ColumnType {
+        INT {
+            @Override
+            Column create(final String path, final int size) {
+                return new IntColumn(path, size);
+            }
+        },
+        LONG {
+            @Override
+            Column create(final String path, final int size) {
+                return new LongColumn(path, size);
+            }
+        },
+        DOUBLE {
+            @Override
+            Column create(final String path, final int size) {
+                return new DoubleColumn(path, size);
+            }
+        },
+        STRING {
+            @Override
+            Column create(final String path, final int size) {
+                return new StringColumn(path, size);
+            }
+        };
+
+        abstract Column create(String path, int size);
+
+        static ColumnType of(final Class<?> type) {
+            final Class<?> wrapper = primitiveToWrapper(type);
+            if (wrapper == Integer.class || wrapper == Short.class || wrapper == Byte.class
+                    || wrapper == Character.class || wrapper == Boolean.class) {
+                return INT;
+            }
+            if (wrapper == Long.class || Date.class.isAssignableFrom(wrapper)) {
+                return LONG;
+            }
+            if (Number.class.isAssignableFrom(wrapper)) {
+                return DOUBLE;
+            }
+            return STRING;
+        }
+    }
+
+    /**
+     * Columns by path, in the order of the paths.
+     */
+    public static final class Columns {
+        private final int size;
+        private final Map<String, Column> columns;
+
+        private Columns(final int size, final Column[] columns, final Dictionary[] dictionaries) {
+            this.size = size;
+            final Map<String, Column> byPath = new LinkedHashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                if (dictionaries[i] != null) {
+                    ((StringColumn) columns[i]).dictionary = unmodifiableList(dictionaries[i].values);
+                }
+                byPath.put(columns[i].path, columns[i]);
+            }
+            this.columns = unmodifiableMap(byPath);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Map<String, Column> getColumns() {
+            return columns;
+        }
+
+        public Column getColumn(final @Nonnull String path) {
+            final Column column = columns.get(path);
+            if (column == null) {
+                throw new IllegalArgumentException("no column for path " + path);
+            }
+            return column;
+        }
+
+        public IntColumn getIntColumn(final @Nonnull String path) {
+            return getColumn(path, IntColumn.class);
+        }
+
+        public LongColumn getLongColumn(final @Nonnull String path) {
+            return getColumn(path, LongColumn.class);
+        }
+
+        public DoubleColumn getDoubleColumn(final @Nonnull String path) {
+            return getColumn(path, DoubleColumn.class);
+        }
+
+        public StringColumn getStringColumn(final @Nonnull String path) {
+            return getColumn(path, StringColumn.class);
+        }
+
+        private <C extends Column> C getColumn(final String path, final Class<C> type) {
+            final Column column = getColumn(path);
+            if (!type.isInstance(column)) {
+                throw new IllegalArgumentException("column " + path + " is " + column.getClass().getSimpleName());
+            }
+            return type.cast(column);
+        }
+    }
+
+    /**
+     * Values of a column are exposed without copying, a row marked as null has the default value.
+     */
+    public abstract static class Column {
+        final String path;
+        final long[] nulls;
+
+        Column(final String path, final int size) {
+            this.path = path;
+            this.nulls = new long[(size + 63) >>> 6];
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isNull(final int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        public int getNullCount() {
+            int count = 0;
+            for (final long word : nulls) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        void setNull(final int row) {
+            nulls[row >>> 6] |= 1L << row;
+        }
+
+        abstract void set(int row, Object value, Dictionary dictionary);
+
+        /**
+         * @param owner owner of the last property of the path, a numeric primitive
+         */
+        void setPrimitive(final int row, final PathAccessor accessor, final Object owner) {
+            throw new IllegalStateException("column " + path + " is not numeric");
+        }
+    }
+
+    public static final class IntColumn extends Column {
+        private final int[] values;
+
+        IntColumn(final String path, final int size) {
+            super(path, size);
+            this.values = new int[size];
+        }
+
+        public int get(final int row) {
+            return values[row];
+        }
+
+        public int[] values() {
+            return values;
+        }
+
+        @Override
+        void set(final int row, final Object value, final Dictionary dictionary) {
+            if (value instanceof Character) {
+                values[row] = (Character) value;
+            } else if (value instanceof Boolean) {
+                values[row] = (Boolean) value ? 1 : 0;
+            } else {
+                values[row] = ((Number) value).intValue();
+            }
+        }
+
+        @Override
+        void setPrimitive(final int row, final PathAccessor accessor, final Object owner) {
+            values[row] = (int) accessor.readLong(owner);
+        }
+    }
+
+    public static final class LongColumn extends Column {
+        private final long[] values;
+
+        LongColumn(final String path, final int size) {
+            super(path, size);
+            this.values = new long[size];
+        }
+
+        public long get(final int row) {
+            return values[row];
+        }
+
+        public long[] values() {
+            return values;
+        }
+
+        @Override
+        void set(final int row, final Object value, final Dictionary dictionary) {
+            values[row] = value instanceof Date ? ((Date) value).getTime() : ((Number) value).longValue();
+        }
+
+        @Override
+        void setPrimitive(final int row, final PathAccessor accessor, final Object owner) {
+            values[row] = accessor.readLong(owner);
+        }
+    }
+
+    public static final class DoubleColumn extends Column {
+        private final double[] values;
+
+        DoubleColumn(final String path, final int size) {
+            super(path, size);
+            this.values = new double[size];
+        }
+
+        public double get(final int row) {
+            return values[row];
+        }
+
+        public double[] values() {
+            return values;
+        }
+
+        @Override
+        void set(final int row, final Object value, final Dictionary dictionary) {
+            values[row] = ((Number) value).doubleValue();
+        }
+
+        @Override
+        void setPrimitive(final int row, final PathAccessor accessor, final Object owner) {
+            values[row] = accessor.readDouble(owner);
+        }
+    }
+
+    /**
+     * Codes are indexes in the dictionary, the dictionary is in the order of the first occurrence.
+     */
+    public static final class StringColumn extends Column {
+        private final int[] codes;
+        private List<String> dictionary;
+
+        StringColumn(final String path, final int size) {
+            super(path, size);
+            this.codes = new int[size];
+        }
+
+        public String get(final int row) {
+            return isNull(row) ? null : dictionary.get(codes[row]);
+        }
+
+        public int getCode(final int row) {
+            return codes[row];
+        }
+
+        public int[] codes() {
+            return codes;
+        }
+
+        public List<String> getDictionary() {
+            return dictionary;
+        }
+
+        @Override
+        void set(final int row, final Object value, final Dictionary dictionary) {
+            codes[row] = dictionary.encode(value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+        }
+
+        @Override
+        void setNull(final int row) {
+            super.setNull(row);
+            codes[row] = -1;
+        }
+
+        void remap(final int[] remap, final int from, final int to) {
+            for (int row = from; row < to; row++) {
+                if (codes[row] >= 0) {
+                    codes[row] = remap[codes[row]];
+                }
+            }
+        }
+    }
+
+    private static final class Dictionary {
+        final Map<String, Integer> codes = new HashMap<>();
+        final List<String> values = new ArrayList<>();
+
+        int encode(final String value) {
+            final Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            codes.put(value, values.size());
+            values.add(value);
+            return values.size() - 1;
+        }
+
+        /**
+         * @return new codes of the values of the other dictionary
+         */
+        int[] merge(final Dictionary other) {
+            final int[] remap = new int[other.values.size()];
+            for (int i = 0; i < remap.length; i++) {
+                remap[i] = encode(other.values.get(i));
+            }
+            return remap;
+        }
+    }
+
+    private static final class ChunkAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        ChunkAction(final int from, final int to, final IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.accept(from);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new ChunkAction(from, middle, action), new ChunkAction(middle, to, action));
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package ru.bdm.reflection;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.apache.commons.lang3.ClassUtils.getPackageName;
+import static org.apache.commons.lang3.ClassUtils.primitiveToWrapper;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_6;
+import static org.objectweb.asm.Type.getInternalName;
+import static org.objectweb.asm.Type.getMethodDescriptor;
+import static ru.bdm.reflection.PropertyJoiner.BooleanPropertyExtractor;
+import static ru.bdm.reflection.PropertyJoiner.DelegateProxy;
+import static ru.bdm.reflection.PropertyJoiner.DoublePropertyExtractor;
+import static ru.bdm.reflection.PropertyJoiner.IntPropertyExtractor;
+import static ru.bdm.reflection.PropertyJoiner.LongPropertyExtractor;
+import static ru.bdm.reflection.PropertyJoiner.PropertyExtractor;
+import static ru.bdm.reflection.Util.getPropertyName;
+import static ru.bdm.reflection.Util.propagate;
+import static ru.bdm.reflection.Util.upperFirst;
+
+/**
+ * Generates proxy classes for {@link PropertyJoiner.Mode#DELEGATE}: a subclass of the entity with a field
+ * holding the joined object and a concrete method per overridable method. Joined getters call
+ * the {@link PropertyExtractor}, all other methods call the same method of the joined object directly.
+ * <p>
+ * Generated classes have no state of their own and are instantiated with {@link Instantiator}. The class name
+ * and a constant field describe the joined properties, so a class pregenerated by {@link ProxyPregenerator}
+ * is found instead of generating it.
+ */
+final class DelegateProxyGenerator {
+
+    private static final String TARGET_FIELD = "target";
+    private static final String EXTRACTOR_FIELD = "extractor";
+    private static final String JOINER_FIELD = "joiner";
+    /**
+     * also added to the proxies of {@link PropertyJoiner.Mode#INVOCATION_HANDLER} mode
+     */
+    static final String KEY_FIELD = "joined$key";
+
+    private static final String OBJECT = getInternalName(Object.class);
+    private static final String STRING_DESCRIPTOR = Type.getDescriptor(String.class);
+    private static final String EXTRACTOR = getInternalName(PropertyExtractor.class);
+    private static final String EXTRACTOR_DESCRIPTOR = Type.getDescriptor(PropertyExtractor.class);
+    private static final String JOINER_DESCRIPTOR = Type.getDescriptor(PropertyJoiner.class);
+    private static final String EXTRACTOR_GET_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;";
+
+    private static final Map<Class<?>, Class<?>> TYPED_EXTRACTORS = new HashMap<>();
+
+    static {
+        TYPED_EXTRACTORS.put(int.class, IntPropertyExtractor.class);
+        TYPED_EXTRACTORS.put(long.class, LongPropertyExtractor.class);
+        TYPED_EXTRACTORS.put(double.class, DoublePropertyExtractor.class);
+        TYPED_EXTRACTORS.put(boolean.class, BooleanPropertyExtractor.class);
+    }
+
+    private DelegateProxyGenerator() {
+    }
+
+    /**
+     * @param key describes the generated class, a class with the same name and key is reused
+     */
+    static Class<?> generate(
+            final String className,
+            final String key,
+            final Class<?> entityClass,
+            final Class<?>[] holderInterfaces,
+            final Map<String, Class<?>> joinedProperties,
+            final ClassLoader classLoader
+    ) {
+        return GeneratedClasses.findOrDefine(
+                className,
+                classLoader,
+                clazz -> key.equals(getKey(clazz)),
+                name -> Events.generate("PropertyJoiner", name, key, () ->
+                        generateBytes(name, key, entityClass, holderInterfaces, joinedProperties, classLoader)
+                )
+        );
+    }
+
+    static Object getKey(final Class<?> clazz) {
+        try {
+            return clazz.getField(KEY_FIELD).get(null);
+        } catch (final NoSuchFieldException e) {
+            return null;
+        } catch (final IllegalAccessException e) {
+            throw propagate(e);
+        }
+    }
+
+    static byte[] generateBytes(
+            final String className,
+            final String key,
+            final Class<?> entityClass,
+            final Class<?>[] holderInterfaces,
+            final Map<String, Class<?>> joinedProperties,
+            final ClassLoader classLoader
+    ) {
+        final String internalName = className.replace('.', '/');
+        final String entity = getInternalName(entityClass);
+        final String entityDescriptor = Type.getDescriptor(entityClass);
+        final boolean entityIsInterface = entityClass.isInterface();
+
+        final String[] interfaces = new String[holderInterfaces.length + (entityIsInterface ? 2 : 1)];
+        int i = 0;
+        for (final Class<?> holderInterface : holderInterfaces) {
+            interfaces[i++] = getInternalName(holderInterface);
+        }
+        interfaces[i++] = getInternalName(DelegateProxy.class);
+        if (entityIsInterface) {
+            interfaces[i] = entity;
+        }
+        final String superName = entityIsInterface ? OBJECT : entity;
+
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_SUPER | ACC_SYNTHETIC, internalName, null, superName, interfaces);
+        cw.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, KEY_FIELD, STRING_DESCRIPTOR, null, key).visitEnd();
+        cw.visitField(ACC_PUBLIC, TARGET_FIELD, entityDescriptor, null, null).visitEnd();
+        cw.visitField(ACC_PUBLIC, EXTRACTOR_FIELD, EXTRACTOR_DESCRIPTOR, null, null).visitEnd();
+        cw.visitField(ACC_PUBLIC, JOINER_FIELD, JOINER_DESCRIPTOR, null, null).visitEnd();
+
+        if (entityIsInterface || hasAccessibleNoArgConstructor(entityClass, classLoader)) {
+            final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V");
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        generateDelegateProxyMethods(cw, internalName, entity, entityDescriptor);
+
+        for (final Method method : getMethods(entityClass, holderInterfaces, classLoader)) {
+            final String propertyName = method.getParameterTypes().length == 0 && method.getReturnType() != void.class
+                    ? getPropertyName(method)
+                    : null;
+            if (propertyName != null && joinedProperties.containsKey(propertyName)) {
+                generateJoinedGetter(cw, internalName, entityDescriptor, method, propertyName, joinedProperties.get(propertyName));
+            } else {
+                generateDelegateMethod(cw, internalName, entity, entityDescriptor, entityIsInterface, method);
+            }
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateDelegateProxyMethods(
+            final ClassWriter cw,
+            final String internalName,
+            final String entity,
+            final String entityDescriptor
+    ) {
+        MethodVisitor mv = cw.visitMethod(
+                ACC_PUBLIC, "joined$bind", "(Ljava/lang/Object;" + EXTRACTOR_DESCRIPTOR + JOINER_DESCRIPTOR + ")V", null, null
+        );
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, entity);
+        mv.visitFieldInsn(PUTFIELD, internalName, TARGET_FIELD, entityDescriptor);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitFieldInsn(PUTFIELD, internalName, EXTRACTOR_FIELD, EXTRACTOR_DESCRIPTOR);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitFieldInsn(PUTFIELD, internalName, JOINER_FIELD, JOINER_DESCRIPTOR);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "joined$target", "()Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName, TARGET_FIELD, entityDescriptor);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "joined$extractor", "()" + EXTRACTOR_DESCRIPTOR, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName, EXTRACTOR_FIELD, EXTRACTOR_DESCRIPTOR);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "joined$joiner", "()" + JOINER_DESCRIPTOR, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName, JOINER_FIELD, JOINER_DESCRIPTOR);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateJoinedGetter(
+            final ClassWriter cw,
+            final String internalName,
+            final String entityDescriptor,
+            final Method method,
+            final String propertyName,
+            final Class<?> propertyType
+    ) {
+        final Class<?> returnType = method.getReturnType();
+        // the extractor of a joiner with primitive properties is wrapped to implement all typed extractors
+        final Class<?> typedExtractor = returnType == propertyType ? TYPED_EXTRACTORS.get(returnType) : null;
+        final MethodVisitor mv = cw.visitMethod(accessFlags(method), method.getName(), getMethodDescriptor(method), null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName, EXTRACTOR_FIELD, EXTRACTOR_DESCRIPTOR);
+        if (typedExtractor != null) {
+            mv.visitTypeInsn(CHECKCAST, getInternalName(typedExtractor));
+        }
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName, TARGET_FIELD, entityDescriptor);
+        mv.visitLdcInsn(propertyName);
+        if (typedExtractor != null) {
+            mv.visitMethodInsn(
+                    INVOKEINTERFACE,
+                    getInternalName(typedExtractor),
+                    "get" + upperFirst(returnType.getName()),
+                    "(Ljava/lang/Object;Ljava/lang/String;)" + Type.getDescriptor(returnType)
+            );
+        } else {
+            mv.visitMethodInsn(INVOKEINTERFACE, EXTRACTOR, "get", EXTRACTOR_GET_DESCRIPTOR);
+            unboxOrCast(mv, returnType);
+        }
+        mv.visitInsn(Type.getType(method.getReturnType()).getOpcode(IRETURN));
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateDelegateMethod(
+            final ClassWriter cw,
+            final String internalName,
+            final String entity,
+            final String entityDescriptor,
+            final boolean entityIsInterface,
+            final Method method
+    ) {
+        final String descriptor = getMethodDescriptor(method);
+        final MethodVisitor mv = cw.visitMethod(accessFlags(method), method.getName(), descriptor, null, exceptions(method));
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, internalName, TARGET_FIELD, entityDescriptor);
+        int slot = 1;
+        for (final Type argumentType : Type.getArgumentTypes(method)) {
+            mv.visitVarInsn(argumentType.getOpcode(ILOAD), slot);
+            slot += argumentType.getSize();
+        }
+        mv.visitMethodInsn(entityIsInterface ? INVOKEINTERFACE : INVOKEVIRTUAL, entity, method.getName(), descriptor);
+        mv.visitInsn(method.getReturnType() == void.class ? RETURN : Type.getType(method.getReturnType()).getOpcode(IRETURN));
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void unboxOrCast(final MethodVisitor mv, final Class<?> type) {
+        if (type == Object.class) {
+            return;
+        }
+        if (!type.isPrimitive()) {
+            mv.visitTypeInsn(CHECKCAST, getInternalName(type));
+            return;
+        }
+        final Class<?> wrapper = primitiveToWrapper(type);
+        mv.visitTypeInsn(CHECKCAST, getInternalName(wrapper));
+        mv.visitMethodInsn(INVOKEVIRTUAL, getInternalName(wrapper), type.getName() + "Value", "()" + Type.getDescriptor(type));
+    }
+
+    private static int accessFlags(final Method method) {
+        return method.getModifiers() & (Modifier.PUBLIC | Modifier.PROTECTED);
+    }
+
+    private static String[] exceptions(final Method method) {
+        final Class<?>[] exceptionTypes = method.getExceptionTypes();
+        final String[] result = new String[exceptionTypes.length];
+        for (int i = 0; i < exceptionTypes.length; i++) {
+            result[i] = getInternalName(exceptionTypes[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Public methods and, if the proxy lands in the same runtime package, non-public methods of the entity package.
+     * Methods that can't be overridden or called on the joined object from the proxy are skipped.
+     */
+    private static Collection<Method> getMethods(
+            final Class<?> entityClass,
+            final Class<?>[] holderInterfaces,
+            final ClassLoader classLoader
+    ) {
+        final Map<String, Method> result = new LinkedHashMap<>();
+        for (final Class<?> holderInterface : holderInterfaces) {
+            for (final Method method : holderInterface.getMethods()) {
+                result.putIfAbsent(method.getName() + getMethodDescriptor(method), method);
+            }
+        }
+        for (final Method method : entityClass.getMethods()) {
+            if (isOverridable(method)) {
+                result.putIfAbsent(method.getName() + getMethodDescriptor(method), method);
+            }
+        }
+        if (isSamePackage(entityClass, classLoader)) {
+            for (Class<?> clazz = entityClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                if (!getPackageName(clazz).equals(getPackageName(entityClass)) || clazz.getClassLoader() != classLoader) {
+                    continue;
+                }
+                for (final Method method : clazz.getDeclaredMethods()) {
+                    final int modifiers = method.getModifiers();
+                    if (!Modifier.isPublic(modifiers) && !Modifier.isPrivate(modifiers) && isOverridable(method)) {
+                        result.putIfAbsent(method.getName() + getMethodDescriptor(method), method);
+                    }
+                }
+            }
+        }
+        return result.values();
+    }
+
+    private static boolean isOverridable(final Method method) {
+        final int modifiers = method.getModifiers();
+        return !Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers);
+    }
+
+    private static boolean isSamePackage(final Class<?> entityClass, final ClassLoader classLoader) {
+        return entityClass.getClassLoader() == classLoader && !entityClass.getName().startsWith("java.");
+    }
+
+    private static boolean hasAccessibleNoArgConstructor(final Class<?> entityClass, final ClassLoader classLoader) {
+        try {
+            final Constructor<?> constructor = entityClass.getDeclaredConstructor();
+            final int modifiers = constructor.getModifiers();
+            return Modifier.isPublic(modifiers)
+                    || Modifier.isProtected(modifiers)
+                    || !Modifier.isPrivate(modifiers) && isSamePackage(entityClass, classLoader);
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
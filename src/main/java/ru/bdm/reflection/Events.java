@@ -0,0 +1,116 @@
+package ru.bdm.reflection;
+
+import net.sf.cglib.core.ClassGenerator;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
+import net.sf.cglib.core.GeneratorStrategy;
+import org.objectweb.asm.ClassReader;
+
+import java.util.function.Supplier;
+
+/**
+ * Flight Recorder events of the library: generation of proxy classes, slow {@link PathExtractor#getPath} calls and
+ * slow {@link PropertyJoiner.PropertyExtractor#get} calls of joined proxies.
+ * <p>
+ * The events are defined in {@code JfrEvents}, which is compiled only by JDKs having {@code jdk.jfr} and is loaded
+ * only if the running JVM has it. Without it all methods do nothing, with it they do nothing until the event
+ * is enabled in a recording.
+ */
+final class Events {
+
+    private static final Recorder RECORDER = createRecorder();
+
+    private Events() {
+    }
+
+    private static Recorder createRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event", false, Events.class.getClassLoader());
+            return (Recorder) Class.forName(Events.class.getPackage().getName() + ".JfrEvents")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (final Exception | LinkageError e) {
+            return null;
+        }
+    }
+
+    static byte[] generate(final String generator, final String className, final String key, final Supplier<byte[]> bytecode) {
+        final Object event = RECORDER == null ? null : RECORDER.beginProxyGeneration();
+        final byte[] bytes = bytecode.get();
+        if (event != null) {
+            RECORDER.endProxyGeneration(event, generator, className, key);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return cglib strategy recording the generation of the class
+     */
+    static GeneratorStrategy generatorStrategy(final String generator, final String key) {
+        if (RECORDER == null) {
+            return DefaultGeneratorStrategy.INSTANCE;
+        }
+        return new DefaultGeneratorStrategy() {
+            @Override
+            public byte[] generate(final ClassGenerator cg) throws Exception {
+                final Object event = RECORDER.beginProxyGeneration();
+                final byte[] bytes = super.generate(cg);
+                if (event != null) {
+                    RECORDER.endProxyGeneration(
+                            event, generator, new ClassReader(bytes).getClassName().replace('/', '.'), key
+                    );
+                }
+                return bytes;
+            }
+        };
+    }
+
+    static Object beginPathExtraction() {
+        return RECORDER == null ? null : RECORDER.beginPathExtraction();
+    }
+
+    static void endPathExtraction(final Object event, final Class<?> entityClass, final String path) {
+        if (event != null) {
+            RECORDER.endPathExtraction(event, entityClass, path);
+        }
+    }
+
+    static boolean isPropertyExtractionEnabled() {
+        return RECORDER != null && RECORDER.isPropertyExtractionEnabled();
+    }
+
+    static Object beginPropertyExtraction() {
+        return RECORDER == null ? null : RECORDER.beginPropertyExtraction();
+    }
+
+    static void endPropertyExtraction(
+            final Object event,
+            final Object obj,
+            final String property,
+            final PropertyJoiner.PropertyExtractor extractor
+    ) {
+        if (event != null) {
+            RECORDER.endPropertyExtraction(
+                    event, obj == null ? null : obj.getClass(), property, extractor.getClass()
+            );
+        }
+    }
+
+    /**
+     * Begin methods return an event or {@code null} if the event is disabled.
+     */
+    interface Recorder {
+        Object beginProxyGeneration();
+
+        void endProxyGeneration(Object event, String generator, String className, String key);
+
+        Object beginPathExtraction();
+
+        void endPathExtraction(Object event, Class<?> entityClass, String path);
+
+        boolean isPropertyExtractionEnabled();
+
+        Object beginPropertyExtraction();
+
+        void endPropertyExtraction(Object event, Class<?> objectClass, String property, Class<?> extractorClass);
+    }
+}
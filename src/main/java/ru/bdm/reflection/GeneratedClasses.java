@@ -0,0 +1,110 @@
+package ru.bdm.reflection;
+
+import net.sf.cglib.core.NamingPolicy;
+import net.sf.cglib.core.ReflectUtils;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static ru.bdm.reflection.Util.propagate;
+
+/**
+ * Names of generated classes and lookup of classes pregenerated by {@link ProxyPregenerator}.
+ * <p>
+ * Generated classes have names that depend only on what is generated, so a class found by the name
+ * in the class loader is used instead of generating it again.
+ */
+final class GeneratedClasses {
+
+    private GeneratedClasses() {
+    }
+
+    /**
+     * @return name of a class generated for the type, classes for {@code java.*} types are placed
+     * in the package of this library
+     */
+    static String getClassName(final Class<?> type, final String suffix) {
+        final String name = type.getName().startsWith("java.")
+                ? GeneratedClasses.class.getPackage().getName() + "." + type.getName().replace('.', '_')
+                : type.getName();
+        return name + suffix;
+    }
+
+    /**
+     * cglib naming policy for classes loaded with {@code setAttemptLoad(true)}: the name is fixed, unless it is taken
+     * by a class generated for another key.
+     */
+    static NamingPolicy namingPolicy(final String name) {
+        return (prefix, source, key, names) -> {
+            String result = name;
+            for (int i = 1; names.evaluate(result); i++) {
+                result = name + "$" + i;
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Same as {@link #namingPolicy(String)}, but a class found by the name in the class loader that doesn't match
+     * is skipped too, so a class with a colliding name is never loaded instead of the generated one.
+     */
+    static NamingPolicy namingPolicy(final String name, final ClassLoader classLoader, final Predicate<Class<?>> matches) {
+        return (prefix, source, key, names) -> {
+            String result = name;
+            for (int i = 1; ; i++) {
+                if (!names.evaluate(result)) {
+                    final Class<?> found = find(result, classLoader);
+                    if (found == null || matches.test(found)) {
+                        return result;
+                    }
+                }
+                result = name + "$" + i;
+            }
+        };
+    }
+
+    static Class<?> find(final String name, final ClassLoader classLoader) {
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (final ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Loads the class with the given name or, if there is no such class, defines it. A class that doesn't match
+     * (another class with the same name) is skipped by adding a suffix to the name.
+     * <p>
+     * Threads may define the same class concurrently: if the definition fails because the name was taken meanwhile,
+     * the class defined by the other thread is checked as any other found class.
+     */
+    static Class<?> findOrDefine(
+            final String name,
+            final ClassLoader classLoader,
+            final Predicate<Class<?>> matches,
+            final Function<String, byte[]> generator
+    ) {
+        String className = name;
+        for (int i = 1; ; ) {
+            final Class<?> found = find(className, classLoader);
+            if (found == null) {
+                try {
+                    return ReflectUtils.defineClass(className, generator.apply(className), classLoader);
+                } catch (final Exception e) {
+                    if (find(className, classLoader) == null) {
+                        throw propagate(e);
+                    }
+                } catch (final LinkageError e) {
+                    if (find(className, classLoader) == null) {
+                        throw e;
+                    }
+                }
+                continue;
+            }
+            if (matches.test(found)) {
+                return found;
+            }
+            className = name + "$" + i++;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+import static ru.bdm.reflection.PropertyJoiner.Mode;
+import static ru.bdm.reflection.PropertyJoiner.PropertyExtractor;
+
+/**
+ * Joins columns of records from a lookup table to objects: the record of an object is found by the value of the key
+ * path of the object (like {@code owner.id}), the columns are joined properties computed from the record.
+ * <p>
+ * The hash table is built once, every object is probed once when it is joined, so the joined getters don't look
+ * the record up again. Keys are compared with {@code equals}, an object without a record (or with a {@code null}
+ * key) has {@code null} columns.
+ */
+public class HashJoiner<T, R> {
+
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final PathAccessor keyAccessor;
+    private final Map<?, ? extends R> table;
+    private final Map<String, Function<? super R, ?>> columns;
+    private final PropertyJoiner joiner;
+
+    /**
+     * @param table   records by key, used as is
+     * @param columns functions computing the joined properties from a record
+     */
+    public HashJoiner(
+            final @Nonnull Mode mode,
+            final @Nonnull Class<T> type,
+            final @Nonnull String keyPath,
+            final @Nonnull Map<?, ? extends R> table,
+            final @Nonnull Map<String, ? extends Function<? super R, ?>> columns
+    ) {
+        this.keyAccessor = PathAccessor.compile(type, keyPath);
+        if (keyAccessor.isMultiValued()) {
+            throw new IllegalArgumentException("key path " + keyPath + " is multi-valued");
+        }
+        this.table = requireNonNull(table);
+        this.columns = Collections.unmodifiableMap(new LinkedHashMap<>(columns));
+        if (this.columns.isEmpty()) {
+            throw new IllegalArgumentException("no columns to join");
+        }
+        this.joiner = new PropertyJoiner(mode, (obj, property) -> {
+            throw new IllegalStateException("property " + property + " is joined without a record");
+        }, this.columns.keySet());
+    }
+
+    /**
+     * @throws IllegalArgumentException if two records have the same key
+     */
+    public HashJoiner(
+            final @Nonnull Mode mode,
+            final @Nonnull Class<T> type,
+            final @Nonnull String keyPath,
+            final @Nonnull Iterable<? extends R> records,
+            final @Nonnull Function<? super R, ?> keyExtractor,
+            final @Nonnull Map<String, ? extends Function<? super R, ?>> columns
+    ) {
+        this(mode, type, keyPath, index(records, keyExtractor), columns);
+    }
+
+    private static <R> Map<Object, R> index(final Iterable<? extends R> records, final Function<? super R, ?> keyExtractor) {
+        final Map<Object, R> table = new HashMap<>();
+        for (final R record : records) {
+            final Object key = keyExtractor.apply(record);
+            if (table.putIfAbsent(key, record) != null) {
+                throw new IllegalArgumentException("duplicate key " + key);
+            }
+        }
+        return table;
+    }
+
+    public Set<String> getColumns() {
+        return columns.keySet();
+    }
+
+    /**
+     * @return record of the object or {@code null} if there is none
+     */
+    public R lookup(final @Nonnull T t) {
+        final Object key = keyAccessor.get(t);
+        return key == null ? null : table.get(key);
+    }
+
+    public T join(final @Nonnull T t) {
+        return join(t, lookup(t));
+    }
+
+    /**
+     * Joins every object, objects without a record are joined with {@code null} columns.
+     */
+    public List<T> join(final @Nonnull List<? extends T> objects) {
+        final List<T> result = new ArrayList<>(objects.size());
+        for (final T t : objects) {
+            result.add(join(t));
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #join(List)}, but large lists are probed by the threads of the common fork/join pool.
+     */
+    public List<T> joinParallel(final @Nonnull List<? extends T> objects) {
+        if (objects.size() < PARALLEL_THRESHOLD) {
+            return join(objects);
+        }
+        return objects.parallelStream().map(this::join).collect(Collectors.<T>toList());
+    }
+
+    /**
+     * @return joined objects having a record, in the order of the list
+     */
+    public List<T> joinMatching(final @Nonnull List<? extends T> objects) {
+        final List<T> result = new ArrayList<>();
+        for (final T t : objects) {
+            final R record = lookup(t);
+            if (record != null) {
+                result.add(join(t, record));
+            }
+        }
+        return result;
+    }
+
+    private T join(final T t, final R record) {
+        return joiner.joinProperties(t, new RecordExtractor<>(columns, record));
+    }
+
+    /**
+     * Columns of the record found for a joined object.
+     */
+    private static final class RecordExtractor<R> implements PropertyExtractor {
+        private final Map<String, Function<? super R, ?>> columns;
+        private final R record;
+
+        RecordExtractor(final Map<String, Function<? super R, ?>> columns, final R record) {
+            this.columns = columns;
+            this.record = record;
+        }
+
+        @Override
+        public Object get(final Object obj, final String property) {
+            return record == null ? null : requireNonNull(columns.get(property), property).apply(record);
+        }
+
+        @Override
+        public String toString() {
+            return Objects.toString(record);
+        }
+    }
+}
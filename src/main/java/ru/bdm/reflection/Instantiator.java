@@ -0,0 +1,77 @@
+package ru.bdm.reflection;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ru.bdm.reflection.Util.propagate;
+
+/**
+ * Creates instances without running constructors of the class and its superclasses, the way
+ * deserialization does. Falls back to the no-arg constructor if the JVM doesn't provide
+ * {@code sun.reflect.ReflectionFactory}.
+ */
+final class Instantiator<T> {
+
+    private static final ConcurrentHashMap<Class<?>, Instantiator<?>> CACHE = new ConcurrentHashMap<>();
+    private static final Object REFLECTION_FACTORY;
+    private static final Method NEW_CONSTRUCTOR_FOR_SERIALIZATION;
+
+    static {
+        Object reflectionFactory;
+        Method newConstructorForSerialization;
+        try {
+            final Class<?> reflectionFactoryClass = Class.forName("sun.reflect.ReflectionFactory");
+            reflectionFactory = reflectionFactoryClass.getMethod("getReflectionFactory").invoke(null);
+            newConstructorForSerialization = reflectionFactoryClass.getMethod(
+                    "newConstructorForSerialization", Class.class, Constructor.class
+            );
+        } catch (final Exception e) {
+            reflectionFactory = null;
+            newConstructorForSerialization = null;
+        }
+        REFLECTION_FACTORY = reflectionFactory;
+        NEW_CONSTRUCTOR_FOR_SERIALIZATION = newConstructorForSerialization;
+    }
+
+    private final Class<T> type;
+    private final Constructor<T> constructor;
+
+    private Instantiator(final Class<T> type) {
+        this.type = type;
+        this.constructor = createConstructor(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Instantiator<T> of(final Class<T> type) {
+        return (Instantiator<T>) CACHE.computeIfAbsent(type, Instantiator::new);
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    T newInstance() {
+        try {
+            return constructor.newInstance();
+        } catch (final Exception e) {
+            throw propagate(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Constructor<T> createConstructor(final Class<T> type) {
+        try {
+            if (NEW_CONSTRUCTOR_FOR_SERIALIZATION != null) {
+                return (Constructor<T>) NEW_CONSTRUCTOR_FOR_SERIALIZATION.invoke(
+                        REFLECTION_FACTORY, type, Object.class.getDeclaredConstructor()
+                );
+            }
+            final Constructor<T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (final Exception e) {
+            throw propagate(e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.bdm.reflection;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder implementation of {@link Events}, loaded by name: the only class referring to {@code jdk.jfr}.
+ * Thresholds of the extraction events can be changed in the recording settings.
+ */
+final class JfrEvents implements Events.Recorder {
+
+    private static final ProxyGeneration PROXY_GENERATION = new ProxyGeneration();
+    private static final PathExtraction PATH_EXTRACTION = new PathExtraction();
+    private static final PropertyExtraction PROPERTY_EXTRACTION = new PropertyExtraction();
+
+    @Override
+    public Object beginProxyGeneration() {
+        if (!PROXY_GENERATION.isEnabled()) {
+            return null;
+        }
+        final ProxyGeneration event = new ProxyGeneration();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endProxyGeneration(final Object event, final String generator, final String className, final String key) {
+        final ProxyGeneration generation = (ProxyGeneration) event;
+        generation.end();
+        if (generation.shouldCommit()) {
+            generation.generator = generator;
+            generation.proxyClass = className;
+            generation.key = key;
+            generation.commit();
+        }
+    }
+
+    @Override
+    public Object beginPathExtraction() {
+        if (!PATH_EXTRACTION.isEnabled()) {
+            return null;
+        }
+        final PathExtraction event = new PathExtraction();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPathExtraction(final Object event, final Class<?> entityClass, final String path) {
+        final PathExtraction extraction = (PathExtraction) event;
+        extraction.end();
+        if (extraction.shouldCommit()) {
+            extraction.entityClass = entityClass;
+            extraction.path = path;
+            extraction.commit();
+        }
+    }
+
+    @Override
+    public boolean isPropertyExtractionEnabled() {
+        return PROPERTY_EXTRACTION.isEnabled();
+    }
+
+    @Override
+    public Object beginPropertyExtraction() {
+        if (!PROPERTY_EXTRACTION.isEnabled()) {
+            return null;
+        }
+        final PropertyExtraction event = new PropertyExtraction();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPropertyExtraction(
+            final Object event,
+            final Class<?> objectClass,
+            final String property,
+            final Class<?> extractorClass
+    ) {
+        final PropertyExtraction extraction = (PropertyExtraction) event;
+        extraction.end();
+        if (extraction.shouldCommit()) {
+            extraction.objectClass = objectClass;
+            extraction.property = property;
+            extraction.extractorClass = extractorClass;
+            extraction.commit();
+        }
+    }
+
+    @Name("ru.bdm.reflection.ProxyGeneration")
+    @Label("Proxy Generation")
+    @Category("banana-up")
+    @Description("Bytecode generation of a proxy class or a property holder interface")
+    @StackTrace(false)
+    static final class ProxyGeneration extends Event {
+        @Label("Generator")
+        String generator;
+
+        @Label("Proxy Class")
+        String proxyClass;
+
+        @Label("Cache Key")
+        String key;
+    }
+
+    @Name("ru.bdm.reflection.PathExtraction")
+    @Label("Path Extraction")
+    @Category("banana-up")
+    @Description("PathExtractor.getPath call")
+    @Threshold("1 ms")
+    static final class PathExtraction extends Event {
+        @Label("Entity Class")
+        Class<?> entityClass;
+
+        @Label("Path")
+        String path;
+    }
+
+    @Name("ru.bdm.reflection.PropertyExtraction")
+    @Label("Property Extraction")
+    @Category("banana-up")
+    @Description("PropertyExtractor.get call of a joined proxy")
+    @Threshold("1 ms")
+    static final class PropertyExtraction extends Event {
+        @Label("Object Class")
+        Class<?> objectClass;
+
+        @Label("Property")
+        String property;
+
+        @Label("Extractor Class")
+        Class<?> extractorClass;
+    }
+}
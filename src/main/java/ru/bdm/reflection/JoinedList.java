@@ -0,0 +1,146 @@
+package ru.bdm.reflection;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Read-only view of a list that joins an element when it is read.
+ *
+ * @see PropertyJoiner#joinAll(List, boolean)
+ */
+final class JoinedList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final List<? extends T> source;
+    private final Function<T, T> join;
+    /**
+     * joined elements by chunks of {@link #CHUNK_SIZE}, a chunk is allocated when an element of it is read first;
+     * null if the elements are not cached
+     */
+    private final AtomicReferenceArray<AtomicReferenceArray<Entry<T>>> chunks;
+
+    JoinedList(final List<? extends T> source, final Function<T, T> join, final boolean cache) {
+        this.source = source instanceof RandomAccess ? source : new ArrayList<>(source);
+        this.join = join;
+        this.chunks = cache ? new AtomicReferenceArray<>((this.source.size() >> CHUNK_SHIFT) + 1) : null;
+    }
+
+    @Override
+    public T get(final int index) {
+        final T element = source.get(index);
+        if (chunks == null) {
+            return join.apply(element);
+        }
+        final int chunkIndex = index >> CHUNK_SHIFT;
+        if (chunkIndex >= chunks.length()) {
+            // the source has grown since the view was created
+            return join.apply(element);
+        }
+        AtomicReferenceArray<Entry<T>> chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(chunkIndex);
+        }
+        final int position = index & (CHUNK_SIZE - 1);
+        final Entry<T> cached = chunk.get(position);
+        // the element at the index may have been replaced in the source since it was joined
+        if (cached != null && cached.element == element) {
+            return cached.joined;
+        }
+        final T joined = join.apply(element);
+        if (!chunk.compareAndSet(position, cached, new Entry<>(element, joined))) {
+            final Entry<T> other = chunk.get(position);
+            if (other != null && other.element == element) {
+                return other.joined;
+            }
+        }
+        return joined;
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new IndexSpliterator(0, -1);
+    }
+
+    private static final class Entry<T> {
+        final Object element;
+        final T joined;
+
+        Entry(final Object element, final T joined) {
+            this.element = element;
+            this.joined = joined;
+        }
+    }
+
+    /**
+     * Splits the index range in halves, so parallel streams get balanced parts without copying the elements.
+     */
+    private final class IndexSpliterator implements Spliterator<T> {
+        private int index;
+        private int fence;
+
+        IndexSpliterator(final int origin, final int fence) {
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        private int getFence() {
+            if (fence < 0) {
+                fence = size();
+            }
+            return fence;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            if (index < getFence()) {
+                action.accept(get(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            final int hi = getFence();
+            while (index < hi) {
+                action.accept(get(index++));
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            final int hi = getFence();
+            final int mid = (index + hi) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            final IndexSpliterator prefix = new IndexSpliterator(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.util.Arrays.asList;
+import static ru.bdm.reflection.PathExtractor.PropertyNotFound;
+import static ru.bdm.reflection.PathExtractor.RawCollection;
+import static ru.bdm.reflection.PropertyJoiner.PropertyExtractor;
+
+/**
+ * Writes the values of a set of paths as JSON objects nested the same way as the paths:
+ * {@code owner.name} is written as {@code {"owner":{"name":...}}}, an object reached through a collection
+ * with further properties is written as an array of objects.
+ * <p>
+ * Getters are resolved to method handles once per writer, the output is buffered in per-thread buffers, so a writer can be shared.
+ * Numbers and booleans are written as is, dates as epoch milliseconds, enums by name, other values
+ * as strings ({@link Object#toString()}), arrays and collections of them as arrays. Malformed surrogate pairs
+ * are written to streams as {@code ?}, as {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+public class JsonPathWriter<T> {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] NULL = "null".toCharArray();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private final Node[] nodes;
+    private final PropertyExtractor extractor;
+
+    public JsonPathWriter(final @Nonnull Class<T> type, final @Nonnull String... paths) {
+        this(type, null, new LinkedHashSet<>(asList(paths)));
+    }
+
+    /**
+     * Writes the given paths and then the properties of the joiner in alphabetical order.
+     * Pass the objects themselves, not joined proxies: values of joined properties are taken
+     * from the extractor of the joiner without creating proxies.
+     */
+    public JsonPathWriter(
+            final @Nonnull Class<T> type,
+            final @Nonnull PropertyJoiner joiner,
+            final @Nonnull String... paths
+    ) {
+        this(type, joiner, join(paths, joiner.getProperties()));
+    }
+
+    private JsonPathWriter(final Class<T> type, final PropertyJoiner joiner, final Set<String> paths) {
+        final Map<String, Object> tree = new LinkedHashMap<>();
+        for (final String path : paths) {
+            Map<String, Object> current = tree;
+            for (final String name : path.split("\\.")) {
+                current = getChildren(current, name);
+            }
+        }
+        this.extractor = joiner == null ? null : joiner.getExtractor();
+        this.nodes = compile(type, "", tree, joiner == null ? null : joiner.getProperties());
+    }
+
+    private static Set<String> join(final String[] paths, final Set<String> joinedProperties) {
+        final Set<String> result = new LinkedHashSet<>(asList(paths));
+        result.addAll(new TreeSet<>(joinedProperties));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getChildren(final Map<String, Object> tree, final String name) {
+        return (Map<String, Object>) tree.computeIfAbsent(name, k -> new LinkedHashMap<String, Object>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Node[] compile(
+            final Class<?> type,
+            final String prefix,
+            final Map<String, Object> tree,
+            final Set<String> joinedProperties
+    ) {
+        final Node[] result = new Node[tree.size()];
+        int i = 0;
+        for (final Map.Entry<String, Object> entry : tree.entrySet()) {
+            final String name = entry.getKey();
+            final String path = prefix + name;
+            final Map<String, Object> children = (Map<String, Object>) entry.getValue();
+            if (joinedProperties != null && joinedProperties.contains(path)) {
+                if (!children.isEmpty()) {
+                    throw new IllegalArgumentException("can't write properties of joined property " + path);
+                }
+                result[i++] = new Node(name, null, path, false, new Node[0]);
+                continue;
+            }
+            final Method getter = PathAccessor.findGetter(type, name);
+            if (getter == null) {
+                throw new PropertyNotFound("can't find getter for " + name + " in " + type.getName() + " (path " + path + ")");
+            }
+            Class<?> childType = getter.getReturnType();
+            final boolean collection = !children.isEmpty() && Collection.class.isAssignableFrom(childType);
+            if (collection) {
+                childType = Util.getCollectionItemType(getter);
+                if (childType == null) {
+                    throw new RawCollection("collection " + path + " is raw");
+                }
+            }
+            result[i++] = new Node(name, getter, null, collection, compile(childType, path + ".", children, joinedProperties));
+        }
+        return result;
+    }
+
+    public void write(final T object, final @Nonnull Writer writer) throws IOException {
+        final CharOutput output = new CharOutput(writer);
+        try {
+            writeObject(object, object, nodes, output);
+            output.flush();
+        } finally {
+            output.release();
+        }
+    }
+
+    public void writeAll(final @Nonnull Iterable<? extends T> objects, final @Nonnull Writer writer) throws IOException {
+        final CharOutput output = new CharOutput(writer);
+        try {
+            writeArray(objects, output);
+            output.flush();
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Writes UTF-8.
+     */
+    public void write(final T object, final @Nonnull OutputStream stream) throws IOException {
+        final ByteOutput output = new ByteOutput(stream);
+        try {
+            writeObject(object, object, nodes, output);
+            output.flush();
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Writes UTF-8.
+     */
+    public void writeAll(final @Nonnull Iterable<? extends T> objects, final @Nonnull OutputStream stream) throws IOException {
+        final ByteOutput output = new ByteOutput(stream);
+        try {
+            writeArray(objects, output);
+            output.flush();
+        } finally {
+            output.release();
+        }
+    }
+
+    private void writeArray(final Iterable<? extends T> objects, final Output output) throws IOException {
+        output.write('[');
+        boolean first = true;
+        for (final T object : objects) {
+            if (!first) {
+                output.write(',');
+            }
+            first = false;
+            writeObject(object, object, nodes, output);
+        }
+        output.write(']');
+    }
+
+    private void writeObject(final Object root, final Object object, final Node[] nodes, final Output output) throws IOException {
+        if (object == null) {
+            output.write(NULL);
+            return;
+        }
+        output.write('{');
+        for (int i = 0; i < nodes.length; i++) {
+            final Node node = nodes[i];
+            if (i != 0) {
+                output.write(',');
+            }
+            output.write(node.key);
+            final Object value = node.joinedPath != null
+                    ? extractor.get(root, node.joinedPath)
+                    : PathAccessor.read(node.reader, node.getter, object);
+            if (node.children.length == 0) {
+                writeValue(value, output);
+            } else if (value == null) {
+                output.write(NULL);
+            } else if (node.collection) {
+                output.write('[');
+                boolean first = true;
+                for (final Object item : (Collection<?>) value) {
+                    if (!first) {
+                        output.write(',');
+                    }
+                    first = false;
+                    writeObject(root, item, node.children, output);
+                }
+                output.write(']');
+            } else {
+                writeObject(root, value, node.children, output);
+            }
+        }
+        output.write('}');
+    }
+
+    private static void writeValue(final Object value, final Output output) throws IOException {
+        if (value == null) {
+            output.write(NULL);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            output.writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            final double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                output.write(NULL);
+            } else {
+                output.write(value.toString());
+            }
+        } else if (value instanceof Number || value instanceof Boolean) {
+            output.write(value.toString());
+        } else if (value instanceof Date) {
+            output.writeLong(((Date) value).getTime());
+        } else if (value instanceof Enum) {
+            writeString(((Enum<?>) value).name(), output);
+        } else if (value instanceof Collection) {
+            output.write('[');
+            boolean first = true;
+            for (final Object item : (Collection<?>) value) {
+                if (!first) {
+                    output.write(',');
+                }
+                first = false;
+                writeValue(item, output);
+            }
+            output.write(']');
+        } else if (value.getClass().isArray()) {
+            output.write('[');
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                if (i != 0) {
+                    output.write(',');
+                }
+                writeValue(Array.get(value, i), output);
+            }
+            output.write(']');
+        } else {
+            writeString(value.toString(), output);
+        }
+    }
+
+    private static void writeString(final String value, final Output output) throws IOException {
+        output.write('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    output.write('\\');
+                    output.write('"');
+                    break;
+                case '\\':
+                    output.write('\\');
+                    output.write('\\');
+                    break;
+                case '\n':
+                    output.write('\\');
+                    output.write('n');
+                    break;
+                case '\r':
+                    output.write('\\');
+                    output.write('r');
+                    break;
+                case '\t':
+                    output.write('\\');
+                    output.write('t');
+                    break;
+                default:
+                    if (c < 0x20) {
+                        output.write('\\');
+                        output.write('u');
+                        output.write('0');
+                        output.write('0');
+                        output.write(HEX[c >> 4]);
+                        output.write(HEX[c & 0xF]);
+                    } else {
+                        output.write(c);
+                    }
+            }
+        }
+        output.write('"');
+    }
+
+    private static final class Node {
+        final char[] key;
+        final Method getter;
+        final MethodHandle reader;
+        final String joinedPath;
+        final boolean collection;
+        final Node[] children;
+
+        Node(final String name, final Method getter, final String joinedPath, final boolean collection, final Node[] children) {
+            final StringBuilderOutput key = new StringBuilderOutput();
+            writeStringUnchecked(name, key);
+            key.write(':');
+            this.key = key.builder.toString().toCharArray();
+            this.getter = getter;
+            this.reader = getter == null ? null : PathAccessor.getterReader(getter);
+            this.joinedPath = joinedPath;
+            this.collection = collection;
+            this.children = children;
+        }
+
+        private static void writeStringUnchecked(final String name, final Output output) {
+            try {
+                writeString(name, output);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private abstract static class Output {
+        abstract void write(char c) throws IOException;
+
+        void write(final char[] chars) throws IOException {
+            for (final char c : chars) {
+                write(c);
+            }
+        }
+
+        void write(final String string) throws IOException {
+            for (int i = 0, length = string.length(); i < length; i++) {
+                write(string.charAt(i));
+            }
+        }
+
+        void writeLong(final long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                write(Long.toString(value));
+                return;
+            }
+            long rest = value;
+            if (rest < 0) {
+                write('-');
+                rest = -rest;
+            }
+            long divisor = 1;
+            while (rest / divisor >= 10) {
+                divisor *= 10;
+            }
+            for (; divisor > 0; divisor /= 10) {
+                write((char) ('0' + rest / divisor % 10));
+            }
+        }
+
+        void flush() throws IOException {
+        }
+    }
+
+    /**
+     * Per-thread buffers; a write started while another one is in progress on the thread (e.g. by a getter)
+     * gets its own buffers.
+     */
+    private static final class Buffers {
+        final char[] chars = new char[BUFFER_SIZE];
+        final byte[] bytes = new byte[BUFFER_SIZE * 3];
+        boolean inUse;
+
+        static Buffers acquire() {
+            final Buffers buffers = BUFFERS.get();
+            if (buffers.inUse) {
+                return new Buffers();
+            }
+            buffers.inUse = true;
+            return buffers;
+        }
+
+        void release() {
+            inUse = false;
+        }
+    }
+
+    private static final class StringBuilderOutput extends Output {
+        final StringBuilder builder = new StringBuilder();
+
+        @Override
+        void write(final char c) {
+            builder.append(c);
+        }
+    }
+
+    private static final class CharOutput extends Output {
+        private final Writer writer;
+        private final Buffers buffers = Buffers.acquire();
+        private final char[] buffer = buffers.chars;
+        private int position;
+
+        CharOutput(final Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        void write(final char c) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = c;
+        }
+
+        private void flushBuffer() throws IOException {
+            writer.write(buffer, 0, position);
+            position = 0;
+        }
+
+        @Override
+        void flush() throws IOException {
+            flushBuffer();
+            writer.flush();
+        }
+
+        void release() {
+            buffers.release();
+        }
+    }
+
+    private static final class ByteOutput extends Output {
+        private static final byte MALFORMED = '?';
+
+        private final OutputStream stream;
+        private final Buffers buffers = Buffers.acquire();
+        private final byte[] buffer = buffers.bytes;
+        private int position;
+        private char highSurrogate;
+
+        ByteOutput(final OutputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        void write(final char c) throws IOException {
+            if (position > buffer.length - 6) {
+                flushBuffer();
+            }
+            if (highSurrogate != 0) {
+                final char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    final int codePoint = Character.toCodePoint(high, c);
+                    buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                    buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+                    return;
+                }
+                buffer[position++] = MALFORMED;
+            }
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buffer[position++] = MALFORMED;
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            stream.write(buffer, 0, position);
+            position = 0;
+        }
+
+        @Override
+        void flush() throws IOException {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                buffer[position++] = MALFORMED;
+            }
+            flushBuffer();
+            stream.flush();
+        }
+
+        void release() {
+            buffers.release();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ru.bdm.reflection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Open addressing hash table of keys compared by a {@link PathKeyStrategy}: keys and their hash codes are kept
+ * in flat arrays and collisions are resolved by linear probing, so adding a key allocates nothing but the arrays
+ * when the table grows. Hash codes are stored, the paths of a key are read once when it is added.
+ * <p>
+ * Keys can't be removed or {@code null}. Not thread-safe.
+ */
+abstract class OpenHashTable<K> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+    private final PathKeyStrategy<? super K> strategy;
+    private Object[] keys;
+    private int[] hashes;
+    private int shift;
+    private int size;
+
+    OpenHashTable(final PathKeyStrategy<? super K> strategy, final int expectedSize) {
+        this.strategy = requireNonNull(strategy);
+        allocate(tableSize(expectedSize));
+    }
+
+    /**
+     * Called after the table has grown with the new slot of every old slot ({@code -1} for an empty one).
+     */
+    abstract void rehashed(int capacity, int[] newSlots);
+
+    public final int size() {
+        return size;
+    }
+
+    public final boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return slot of the key or {@code -1} if there is no such key
+     */
+    final int find(final K key) {
+        final int hash = strategy.hashCode(key);
+        final int slot = probe(key, hash);
+        return keys[slot] == null ? -1 : slot;
+    }
+
+    /**
+     * @return slot of the key, a new key is added to a negative slot {@code -slot - 1}
+     */
+    final int insert(final K key) {
+        requireNonNull(key);
+        final int hash = strategy.hashCode(key);
+        int slot = probe(key, hash);
+        if (keys[slot] != null) {
+            return slot;
+        }
+        if (2 * (size + 1) > keys.length) {
+            grow();
+            slot = probe(key, hash);
+        }
+        keys[slot] = key;
+        hashes[slot] = hash;
+        size++;
+        return -slot - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    final K keyAt(final int slot) {
+        return (K) keys[slot];
+    }
+
+    final int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return keys in the order of the slots
+     */
+    public final List<K> keys() {
+        final List<K> result = new ArrayList<>(size);
+        forEachKey(result::add);
+        return result;
+    }
+
+    public final void forEachKey(final Consumer<? super K> consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                consumer.accept(keyAt(slot));
+            }
+        }
+    }
+
+    private int probe(final K key, final int hash) {
+        final int mask = keys.length - 1;
+        int slot = (hash * GOLDEN_RATIO) >>> shift;
+        while (true) {
+            final Object found = keys[slot];
+            if (found == null) {
+                return slot;
+            }
+            if (hashes[slot] == hash && strategy.equals(keyAt(slot), key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        final Object[] oldKeys = keys;
+        final int[] oldHashes = hashes;
+        allocate(oldKeys.length * 2);
+        final int mask = keys.length - 1;
+        final int[] newSlots = new int[oldKeys.length];
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] == null) {
+                newSlots[oldSlot] = -1;
+                continue;
+            }
+            int slot = (oldHashes[oldSlot] * GOLDEN_RATIO) >>> shift;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[oldSlot];
+            hashes[slot] = oldHashes[oldSlot];
+            newSlots[oldSlot] = slot;
+        }
+        rehashed(keys.length, newSlots);
+    }
+
+    private void allocate(final int capacity) {
+        this.keys = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    private static int tableSize(final int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expected size " + expectedSize + " is negative");
+        }
+        final int size = Math.max(DEFAULT_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize)) << 2);
+        return size < 0 ? 1 << 30 : size;
+    }
+}
@@ -0,0 +1,637 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+import static java.util.Objects.requireNonNull;
+import static ru.bdm.reflection.PathExtractor.PropertyNotFound;
+import static ru.bdm.reflection.PathExtractor.RawCollection;
+import static ru.bdm.reflection.Util.getGetterName;
+import static ru.bdm.reflection.Util.propagate;
+
+/**
+ * Getter chain for a dotted path (as produced by {@link PathExtractor} and {@link PathExtractorJava8}),
+ * resolved once per (root class, path) and cached.
+ * <p>
+ * A collection in the middle of the path is a masked hop: the rest of the path is applied to every item,
+ * so such a path is multi-valued. A {@code null} in the middle of the path yields {@code null}
+ * (or no value at all for the items of a multi-valued path).
+ * <p>
+ * Properties are read with bean getters or record-style accessors ({@code name()}), with {@link Access#FIELDS}
+ * the fields backing them are read directly.
+ */
+public final class PathAccessor {
+
+    private static final ConcurrentHashMap<Key, PathAccessor> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<?> rootType;
+    private final String path;
+    private final Access access;
+    private final Method[] getters;
+    /**
+     * handles reading the properties, null where the getter can only be invoked reflectively
+     */
+    private final MethodHandle[] readers;
+    private final boolean[] hops;
+    private final boolean multiValued;
+    private final Class<?> valueType;
+    /**
+     * handles of type {@code (Object)long} and {@code (Object)double} reading the last property of a numeric
+     * primitive type without boxing, null for other types
+     */
+    private final MethodHandle longReader;
+    private final MethodHandle doubleReader;
+
+    private PathAccessor(final Class<?> rootType, final String path, final Access access) {
+        this.rootType = rootType;
+        this.path = path;
+        this.access = access;
+        final String[] names = path.split("\\.");
+        this.getters = new Method[names.length];
+        this.readers = new MethodHandle[names.length];
+        this.hops = new boolean[names.length];
+        Class<?> current = rootType;
+        boolean multi = false;
+        Member last = null;
+        for (int i = 0; i < names.length; i++) {
+            final Method getter = findGetter(current, names[i]);
+            final Field field = access == Access.FIELDS ? findField(current, names[i], getter) : null;
+            final MethodHandle fieldReader = field == null ? null : fieldReader(field);
+            if (getter == null && fieldReader == null) {
+                throw new PropertyNotFound("can't find getter for " + names[i] + " in " + current.getName() + " (path " + path + ")");
+            }
+            readers[i] = fieldReader != null ? fieldReader : getterReader(getter);
+            final Member member = fieldReader != null ? field : getter;
+            last = member;
+            getters[i] = getter;
+            current = member instanceof Field ? ((Field) member).getType() : getter.getReturnType();
+            if (i < names.length - 1 && Collection.class.isAssignableFrom(current)) {
+                final Class<?> itemType = Util.getCollectionItemType(member);
+                if (itemType == null) {
+                    throw new RawCollection("collection " + names[i] + " is raw (path " + path + ")");
+                }
+                hops[i] = true;
+                multi = true;
+                current = itemType;
+            }
+        }
+        this.multiValued = multi;
+        this.valueType = current;
+        final boolean integral = current == long.class || current == int.class || current == short.class
+                || current == byte.class;
+        this.longReader = integral ? primitiveReader(last, long.class) : null;
+        this.doubleReader = integral || current == double.class || current == float.class
+                ? primitiveReader(last, double.class)
+                : null;
+    }
+
+    public static PathAccessor compile(final @Nonnull Class<?> rootType, final @Nonnull String path) {
+        return compile(rootType, path, Access.GETTERS);
+    }
+
+    public static PathAccessor compile(
+            final @Nonnull Class<?> rootType,
+            final @Nonnull String path,
+            final @Nonnull Access access
+    ) {
+        return CACHE.computeIfAbsent(
+                new Key(requireNonNull(rootType), requireNonNull(path), requireNonNull(access)),
+                key -> new PathAccessor(key.rootType, key.path, key.access)
+        );
+    }
+
+    public static PathAccessor[] compile(final @Nonnull Class<?> rootType, final @Nonnull String... paths) {
+        final PathAccessor[] result = new PathAccessor[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            result[i] = compile(rootType, paths[i]);
+        }
+        return result;
+    }
+
+    static Method findGetter(final Class<?> type, final String property) {
+        for (final Class<?> returnType : new Class<?>[]{Object.class, boolean.class}) {
+            final Method getter = findMethod(type, getGetterName(property, returnType));
+            if (getter != null && getter.getReturnType() != void.class && !Modifier.isStatic(getter.getModifiers())) {
+                getter.setAccessible(true);
+                return getter;
+            }
+        }
+        final Method accessor = findMethod(type, property);
+        if (accessor != null && property.equals(Util.getPropertyName(accessor))) {
+            accessor.setAccessible(true);
+            return accessor;
+        }
+        return null;
+    }
+
+    /**
+     * @return field with the name of the property and the type of its getter (if there is the getter),
+     * or null if there is no such field or it can't be made accessible
+     */
+    static Field findField(final Class<?> type, final String property, final Method getter) {
+        final Field field = Util.findField(type, property);
+        if (field == null || getter != null && !getter.getReturnType().isAssignableFrom(field.getType())) {
+            return null;
+        }
+        try {
+            field.setAccessible(true);
+            return field;
+        } catch (final RuntimeException e) {
+            // SecurityException or, since Java 9, InaccessibleObjectException for fields of closed modules
+            return null;
+        }
+    }
+
+    /**
+     * @return handle of type {@code (Object)Object} reading the field, or null if it can't be read
+     */
+    static MethodHandle fieldReader(final Field field) {
+        try {
+            return MethodHandles.lookup().unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+        } catch (final IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return handle of type {@code (Object)type} reading the member, or null if it can't be read
+     */
+    private static MethodHandle primitiveReader(final Member member, final Class<?> type) {
+        try {
+            final MethodHandle handle = member instanceof Field
+                    ? MethodHandles.lookup().unreflectGetter((Field) member)
+                    : MethodHandles.lookup().unreflect((Method) member);
+            return handle.asType(MethodType.methodType(type, Object.class));
+        } catch (final IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return handle of type {@code (Object)Object} invoking the getter, so reading it allocates no argument arrays;
+     * null if it can't be unreflected
+     */
+    static MethodHandle getterReader(final Method getter) {
+        try {
+            return MethodHandles.lookup().unreflect(getter).asType(MethodType.methodType(Object.class, Object.class));
+        } catch (final IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return handle of type {@code (Object,Object)void} writing the field, or null if it is final or can't be written
+     */
+    static MethodHandle fieldWriter(final Field field) {
+        if (Modifier.isFinal(field.getModifiers())) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        } catch (final IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(final Class<?> type, final String name) {
+        try {
+            return type.getMethod(name);
+        } catch (final NoSuchMethodException ignored) {
+            //not public, look in declared methods
+        }
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            try {
+                return clazz.getDeclaredMethod(name);
+            } catch (final NoSuchMethodException ignored) {
+                //look in superclass
+            }
+        }
+        return null;
+    }
+
+    public Class<?> getRootType() {
+        return rootType;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return type of the last property in the path (item type is not resolved for a trailing collection)
+     */
+    public Class<?> getValueType() {
+        return valueType;
+    }
+
+    public Access getAccess() {
+        return access;
+    }
+
+    /**
+     * @return getters of the path, with {@link Access#FIELDS} a property without a getter has {@code null}
+     */
+    Method[] getGetters() {
+        return getters.clone();
+    }
+
+    public boolean isMultiValued() {
+        return multiValued;
+    }
+
+    /**
+     * @throws IllegalStateException if the path contains a collection hop
+     */
+    public Object get(final Object root) {
+        if (multiValued) {
+            throw new IllegalStateException("path " + path + " is multi-valued");
+        }
+        Object current = root;
+        for (int i = 0; i < getters.length && current != null; i++) {
+            current = read(i, current);
+        }
+        return current;
+    }
+
+    /**
+     * Passes every value of the path to the consumer; a single-valued path always produces exactly one value.
+     */
+    public void forEach(final Object root, final @Nonnull Consumer<Object> consumer) {
+        if (!multiValued) {
+            consumer.accept(get(root));
+        } else {
+            forEach(root, 0, consumer);
+        }
+    }
+
+    public List<Object> getAll(final Object root) {
+        final List<Object> result = new ArrayList<>();
+        forEach(root, result::add);
+        return result;
+    }
+
+    private void forEach(final Object current, final int step, final Consumer<Object> consumer) {
+        if (step == getters.length) {
+            consumer.accept(current);
+            return;
+        }
+        if (current == null) {
+            return;
+        }
+        final Object value = read(step, current);
+        if (!hops[step]) {
+            forEach(value, step + 1, consumer);
+        } else if (value != null) {
+            for (final Object item : (Collection<?>) value) {
+                forEach(item, step + 1, consumer);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #forEach(Object, Consumer)} for a numeric path, but a primitive value is passed without boxing;
+     * {@code null} values are skipped.
+     */
+    void forEachLong(final Object root, final @Nonnull LongConsumer consumer) {
+        forEachNumber(root, 0, consumer, null);
+    }
+
+    /**
+     * @see #forEachLong(Object, LongConsumer)
+     */
+    void forEachDouble(final Object root, final @Nonnull DoubleConsumer consumer) {
+        forEachNumber(root, 0, null, consumer);
+    }
+
+    private void forEachNumber(
+            final Object current,
+            final int step,
+            final LongConsumer longConsumer,
+            final DoubleConsumer doubleConsumer
+    ) {
+        if (current == null) {
+            return;
+        }
+        if (step == getters.length - 1) {
+            if (longConsumer != null && longReader != null) {
+                longConsumer.accept(readLong(current));
+            } else if (longConsumer == null && doubleReader != null) {
+                doubleConsumer.accept(readDouble(current));
+            } else {
+                final Object value = read(step, current);
+                if (value != null && longConsumer != null) {
+                    longConsumer.accept(((Number) value).longValue());
+                } else if (value != null) {
+                    doubleConsumer.accept(((Number) value).doubleValue());
+                }
+            }
+            return;
+        }
+        final Object value = read(step, current);
+        if (!hops[step]) {
+            forEachNumber(value, step + 1, longConsumer, doubleConsumer);
+        } else if (value instanceof List && value instanceof RandomAccess) {
+            final List<?> items = (List<?>) value;
+            for (int i = 0; i < items.size(); i++) {
+                forEachNumber(items.get(i), step + 1, longConsumer, doubleConsumer);
+            }
+        } else if (value != null) {
+            for (final Object item : (Collection<?>) value) {
+                forEachNumber(item, step + 1, longConsumer, doubleConsumer);
+            }
+        }
+    }
+
+    /**
+     * Same as {@code getAll(root).stream().anyMatch(predicate)}, but the values are not collected
+     * and the walk stops at the first matching value.
+     */
+    boolean anyMatch(final Object root, final Predicate<Object> predicate) {
+        return multiValued ? anyMatch(root, 0, predicate) : predicate.test(get(root));
+    }
+
+    private boolean anyMatch(final Object current, final int step, final Predicate<Object> predicate) {
+        if (step == getters.length) {
+            return predicate.test(current);
+        }
+        if (current == null) {
+            return false;
+        }
+        final Object value = read(step, current);
+        if (!hops[step]) {
+            return anyMatch(value, step + 1, predicate);
+        }
+        if (value != null) {
+            for (final Object item : (Collection<?>) value) {
+                if (anyMatch(item, step + 1, predicate)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the values of the path of two objects without collecting them. A multi-valued path is compared
+     * structurally: objects on the path must be both null or both not null and collections must have
+     * the same size, items are compared in the iteration order.
+     */
+    boolean valuesEqual(final Object left, final Object right) {
+        if (multiValued) {
+            return valuesEqual(left, right, 0);
+        }
+        if (doubleReader == null) {
+            return Objects.deepEquals(get(left), get(right));
+        }
+        final Object leftOwner = owner(left);
+        final Object rightOwner = owner(right);
+        if (leftOwner == null || rightOwner == null) {
+            // a primitive value is null only if an object on the path is null
+            return leftOwner == rightOwner;
+        }
+        return primitiveEquals(leftOwner, rightOwner);
+    }
+
+    /**
+     * @return object having the last property of a single-valued path, null if an object on the path is null
+     */
+    Object owner(final Object root) {
+        Object current = root;
+        for (int i = 0; i < getters.length - 1 && current != null; i++) {
+            current = read(i, current);
+        }
+        return current;
+    }
+
+    private boolean valuesEqual(final Object left, final Object right, final int step) {
+        if (left == right) {
+            return true;
+        }
+        if (step == getters.length) {
+            return Objects.deepEquals(left, right);
+        }
+        if (left == null || right == null) {
+            return false;
+        }
+        if (step == getters.length - 1 && doubleReader != null) {
+            return primitiveEquals(left, right);
+        }
+        final Object leftValue = read(step, left);
+        final Object rightValue = read(step, right);
+        if (!hops[step]) {
+            return valuesEqual(leftValue, rightValue, step + 1);
+        }
+        if (leftValue == rightValue) {
+            return true;
+        }
+        if (leftValue == null || rightValue == null) {
+            return false;
+        }
+        final Collection<?> leftItems = (Collection<?>) leftValue;
+        final Collection<?> rightItems = (Collection<?>) rightValue;
+        if (leftItems.size() != rightItems.size()) {
+            return false;
+        }
+        if (leftItems instanceof List && leftItems instanceof RandomAccess
+                && rightItems instanceof List && rightItems instanceof RandomAccess) {
+            final List<?> leftList = (List<?>) leftItems;
+            final List<?> rightList = (List<?>) rightItems;
+            for (int i = 0; i < leftList.size(); i++) {
+                if (!valuesEqual(leftList.get(i), rightList.get(i), step + 1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        final Iterator<?> rightIterator = rightItems.iterator();
+        for (final Object leftItem : leftItems) {
+            if (!valuesEqual(leftItem, rightIterator.next(), step + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the numeric primitive values of the last property of the objects without boxing them,
+     * doubles are compared as {@link Double#equals(Object)} does.
+     */
+    private boolean primitiveEquals(final Object left, final Object right) {
+        if (longReader != null) {
+            return readLong(left) == readLong(right);
+        }
+        return Double.doubleToLongBits(readDouble(left)) == Double.doubleToLongBits(readDouble(right));
+    }
+
+    /**
+     * Hash code of the values of the path of an object, consistent with {@link #valuesEqual(Object, Object)};
+     * the values are not collected.
+     */
+    int valuesHashCode(final Object root) {
+        return multiValued ? valuesHashCode(root, 0) : deepHashCode(get(root));
+    }
+
+    private int valuesHashCode(final Object current, final int step) {
+        if (step == getters.length) {
+            return deepHashCode(current);
+        }
+        if (current == null) {
+            return 0;
+        }
+        final Object value = read(step, current);
+        if (!hops[step]) {
+            return valuesHashCode(value, step + 1);
+        }
+        if (value == null) {
+            return 0;
+        }
+        int result = 1;
+        for (final Object item : (Collection<?>) value) {
+            result = 31 * result + valuesHashCode(item, step + 1);
+        }
+        return result;
+    }
+
+    private static int deepHashCode(final Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return value.getClass().isArray() ? Arrays.deepHashCode(new Object[]{value}) : value.hashCode();
+    }
+
+    private Object read(final int step, final Object target) {
+        return read(readers[step], getters[step], target);
+    }
+
+    /**
+     * @param reader handle of type {@code (Object)Object} or null to invoke the getter reflectively
+     */
+    static Object read(final MethodHandle reader, final Method getter, final Object target) {
+        if (reader == null) {
+            return invoke(getter, target);
+        }
+        try {
+            return (Object) reader.invokeExact(target);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw propagate((Exception) e);
+        }
+    }
+
+    /**
+     * @return true if the last property is of a numeric primitive type, read from its owner
+     * by {@link #readDouble(Object)} and, for integral types, by {@link #readLong(Object)} without boxing
+     */
+    boolean hasPrimitiveReader() {
+        return doubleReader != null;
+    }
+
+    /**
+     * @param target owner of the last property, see {@link #owner(Object)}
+     */
+    long readLong(final Object target) {
+        try {
+            return (long) longReader.invokeExact(target);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw propagate((Exception) e);
+        }
+    }
+
+    /**
+     * @param target owner of the last property, see {@link #owner(Object)}
+     */
+    double readDouble(final Object target) {
+        try {
+            return (double) doubleReader.invokeExact(target);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw propagate((Exception) e);
+        }
+    }
+
+    static Object invoke(final Method getter, final Object target) {
+        try {
+            return getter.invoke(target);
+        } catch (final InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw propagate((Exception) cause);
+        } catch (final IllegalAccessException e) {
+            throw propagate(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return rootType.getName() + ":" + path + (access == Access.GETTERS ? "" : " (" + access + ")");
+    }
+
+    /**
+     * How properties on a path are read.
+     */
+    public enum Access {
+        /**
+         * with getters
+         */
+        GETTERS,
+        /**
+         * with the fields having the names of the properties, properties without such fields are read with getters
+         */
+        FIELDS
+    }
+
+    private static final class Key {
+        final Class<?> rootType;
+        final String path;
+        final Access access;
+
+        Key(final Class<?> rootType, final String path, final Access access) {
+            this.rootType = rootType;
+            this.path = path;
+            this.access = access;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return rootType == that.rootType && path.equals(that.path) && access == that.access;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rootType, path, access);
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongConsumer;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static org.apache.commons.lang3.ClassUtils.primitiveToWrapper;
+
+/**
+ * Aggregates over numeric paths, optionally grouped by the values of other paths:
+ * <pre>
+ * List&lt;PathAggregator.Group&gt; groups = PathAggregator.of(Order.class)
+ *         .groupBy("customer.region")
+ *         .count().sum("lines.amount").max("lines.quantity")
+ *         .aggregateParallel(orders);
+ * </pre>
+ * Every value of a path with masked collection hops is aggregated, {@code null} values are skipped (and are not
+ * counted by {@link #count(String)}), {@code null} items are skipped altogether. Sums, minimums and maximums of
+ * integral paths are longs, of other numbers doubles, averages are doubles.
+ * <p>
+ * Values are accumulated into primitive arrays of the groups, the groups are found by a {@link PathKeyStrategy},
+ * so no key objects or collections of values are built. {@link #aggregateParallel(List)} splits the list into ranges
+ * for the threads of the common fork/join pool, every thread accumulates its ranges into its own groups,
+ * which are merged at the end.
+ * Groups are in the order of their first items.
+ */
+public final class PathAggregator<T> {
+
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final Class<T> type;
+    private final PathAccessor[] groupAccessors;
+    private final PathKeyStrategy<T> keyStrategy;
+    private final Aggregate[] aggregates;
+
+    private PathAggregator(
+            final Class<T> type,
+            final PathAccessor[] groupAccessors,
+            final PathKeyStrategy<T> keyStrategy,
+            final Aggregate[] aggregates
+    ) {
+        this.type = type;
+        this.groupAccessors = groupAccessors;
+        this.keyStrategy = keyStrategy;
+        this.aggregates = aggregates;
+    }
+
+    public static <T> PathAggregator<T> of(final @Nonnull Class<T> type) {
+        return new PathAggregator<>(type, new PathAccessor[0], null, new Aggregate[0]);
+    }
+
+    /**
+     * @return aggregator grouping by the values of the paths instead of the paths of this aggregator
+     */
+    public PathAggregator<T> groupBy(final @Nonnull String... paths) {
+        return new PathAggregator<>(
+                type,
+                PathAccessor.compile(type, paths),
+                paths.length == 0 ? null : new PathKeyStrategy<>(type, paths),
+                aggregates
+        );
+    }
+
+    /**
+     * Number of items.
+     */
+    public PathAggregator<T> count() {
+        return with(new Aggregate(Kind.COUNT, null));
+    }
+
+    /**
+     * Number of non-null values of the path.
+     */
+    public PathAggregator<T> count(final @Nonnull String path) {
+        return with(new Aggregate(Kind.COUNT, PathAccessor.compile(type, path)));
+    }
+
+    public PathAggregator<T> sum(final @Nonnull String path) {
+        return with(new Aggregate(Kind.SUM, numeric(path)));
+    }
+
+    public PathAggregator<T> min(final @Nonnull String path) {
+        return with(new Aggregate(Kind.MIN, numeric(path)));
+    }
+
+    public PathAggregator<T> max(final @Nonnull String path) {
+        return with(new Aggregate(Kind.MAX, numeric(path)));
+    }
+
+    public PathAggregator<T> avg(final @Nonnull String path) {
+        return with(new Aggregate(Kind.AVG, numeric(path)));
+    }
+
+    /**
+     * @return labels of the aggregates like {@code sum(lines.amount)}, in the order they were added
+     */
+    public List<String> getAggregates() {
+        final List<String> result = new ArrayList<>(aggregates.length);
+        for (final Aggregate aggregate : aggregates) {
+            result.add(aggregate.label);
+        }
+        return unmodifiableList(result);
+    }
+
+    public List<String> getGroupBy() {
+        final List<String> result = new ArrayList<>(groupAccessors.length);
+        for (final PathAccessor accessor : groupAccessors) {
+            result.add(accessor.getPath());
+        }
+        return unmodifiableList(result);
+    }
+
+    /**
+     * @return groups in the order of their first items; a single group with an empty key if there is no grouping
+     */
+    public List<Group> aggregate(final @Nonnull List<? extends T> items) {
+        final List<? extends T> list = randomAccess(items);
+        final Partial partial = new Partial();
+        partial.addAll(list, 0, list.size());
+        return partial.toGroups();
+    }
+
+    /**
+     * Same as {@link #aggregate(List)}, but large lists are split between the threads of the common fork/join pool.
+     */
+    public List<Group> aggregateParallel(final @Nonnull List<? extends T> items) {
+        final List<? extends T> list = randomAccess(items);
+        if (list.size() < PARALLEL_THRESHOLD) {
+            return aggregate(list);
+        }
+        final Map<Thread, Partial> partials = new ConcurrentHashMap<>();
+        ForkJoinPool.commonPool().invoke(new AggregateTask(list, 0, list.size(), partials));
+        Partial result = null;
+        for (final Partial partial : partials.values()) {
+            result = result == null ? partial : result.merge(partial);
+        }
+        return result.toGroups();
+    }
+
+    private static <T> List<? extends T> randomAccess(final List<? extends T> items) {
+        return items instanceof RandomAccess ? items : new ArrayList<>(items);
+    }
+
+    private PathAggregator<T> with(final Aggregate aggregate) {
+        final Aggregate[] result = Arrays.copyOf(aggregates, aggregates.length + 1);
+        result[aggregates.length] = aggregate;
+        return new PathAggregator<>(type, groupAccessors, keyStrategy, result);
+    }
+
+    private PathAccessor numeric(final String path) {
+        final PathAccessor accessor = PathAccessor.compile(type, path);
+        if (!Number.class.isAssignableFrom(primitiveToWrapper(accessor.getValueType()))) {
+            throw new IllegalArgumentException("path " + path + " of " + accessor.getValueType().getName() + " is not numeric");
+        }
+        return accessor;
+    }
+
+    private static boolean isIntegral(final Class<?> type) {
+        final Class<?> wrapper = primitiveToWrapper(type);
+        return wrapper == Long.class || wrapper == Integer.class || wrapper == Short.class || wrapper == Byte.class;
+    }
+
+    @Override
+    public String toString() {
+        return type.getName() + ":" + getAggregates() + (groupAccessors.length == 0 ? "" : " by " + getGroupBy());
+    }
+
+    private enum Kind {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    private static final class Aggregate {
+        final Kind kind;
+        final PathAccessor accessor;
+        final boolean integral;
+        final String label;
+
+        Aggregate(final Kind kind, final PathAccessor accessor) {
+            this.kind = kind;
+            this.accessor = accessor;
+            this.integral = kind == Kind.COUNT || kind != Kind.AVG && isIntegral(accessor.getValueType());
+            this.label = kind.name().toLowerCase() + (accessor == null ? "()" : "(" + accessor.getPath() + ")");
+        }
+    }
+
+    /**
+     * Groups accumulated from ranges of the list.
+     */
+    private final class Partial {
+        private final PathHashMap<T, Group> groups = keyStrategy == null ? null : new PathHashMap<>(keyStrategy);
+        private final Group single = keyStrategy == null ? new Group(aggregates, null, 0) : null;
+        /**
+         * feeders of the aggregates of paths, reused for every item
+         */
+        private final Feeder[] feeders = new Feeder[aggregates.length];
+
+        Partial() {
+            for (int i = 0; i < aggregates.length; i++) {
+                if (aggregates[i].accessor != null) {
+                    feeders[i] = new Feeder(i);
+                }
+            }
+        }
+
+        void addAll(final List<? extends T> items, final int from, final int to) {
+            for (int row = from; row < to; row++) {
+                final T item = items.get(row);
+                if (item != null) {
+                    add(item, row);
+                }
+            }
+        }
+
+        private void add(final T item, final int row) {
+            Group group = single;
+            if (groups != null) {
+                group = groups.get(item);
+                if (group == null) {
+                    group = new Group(aggregates, item, row);
+                    groups.put(item, group);
+                }
+            }
+            for (int i = 0; i < aggregates.length; i++) {
+                final Aggregate aggregate = aggregates[i];
+                if (aggregate.accessor == null) {
+                    group.counts[i]++;
+                } else {
+                    feeders[i].group = group;
+                    if (aggregate.kind == Kind.COUNT) {
+                        aggregate.accessor.forEach(item, feeders[i]);
+                    } else if (aggregate.integral) {
+                        aggregate.accessor.forEachLong(item, feeders[i]);
+                    } else {
+                        aggregate.accessor.forEachDouble(item, feeders[i]);
+                    }
+                }
+            }
+        }
+
+        Partial merge(final Partial other) {
+            if (groups == null) {
+                single.merge(other.single);
+                return this;
+            }
+            other.groups.forEach((item, group) -> {
+                final Group found = groups.get(item);
+                if (found == null) {
+                    groups.put(item, group);
+                } else {
+                    found.merge(group);
+                }
+            });
+            return this;
+        }
+
+        List<Group> toGroups() {
+            if (groups == null) {
+                return Collections.singletonList(single.complete(groupAccessors));
+            }
+            final List<Group> result = new ArrayList<>(groups.size());
+            groups.forEach((item, group) -> result.add(group.complete(groupAccessors)));
+            result.sort(Comparator.comparingInt(group -> group.firstRow));
+            return unmodifiableList(result);
+        }
+    }
+
+    /**
+     * Passes the values of a path to the accumulators of the current group, numbers are passed unboxed.
+     */
+    private static final class Feeder implements Consumer<Object>, LongConsumer, DoubleConsumer {
+        private final int index;
+        Group group;
+
+        Feeder(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void accept(final Object value) {
+            if (value != null) {
+                group.counts[index]++;
+            }
+        }
+
+        @Override
+        public void accept(final long value) {
+            group.add(index, value);
+        }
+
+        @Override
+        public void accept(final double value) {
+            group.add(index, value);
+        }
+    }
+
+    /**
+     * Accumulates a range of the list into the groups of the current thread, so the number of group sets to merge
+     * depends on the number of threads, not on the size of the list.
+     */
+    private final class AggregateTask extends RecursiveAction {
+        private final List<? extends T> items;
+        private final int from;
+        private final int to;
+        private final Map<Thread, Partial> partials;
+
+        AggregateTask(final List<? extends T> items, final int from, final int to, final Map<Thread, Partial> partials) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.partials = partials;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                partials.computeIfAbsent(Thread.currentThread(), thread -> new Partial()).addAll(items, from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new AggregateTask(items, from, middle, partials), new AggregateTask(items, middle, to, partials));
+        }
+    }
+
+    /**
+     * Aggregates of a group of items with equal values of the group paths. Aggregates are accessed by their indexes
+     * in {@link #getAggregates()}.
+     */
+    public static final class Group {
+        private final Aggregate[] aggregates;
+        private final Object item;
+        private int firstRow;
+        /**
+         * numbers of items or values
+         */
+        private final long[] counts;
+        /**
+         * sums, minimums and maximums of integral values
+         */
+        private final long[] longs;
+        /**
+         * sums, minimums and maximums of other values, sums of values to average
+         */
+        private final double[] doubles;
+        private List<Object> key;
+
+        private Group(final Aggregate[] aggregates, final Object item, final int firstRow) {
+            this.aggregates = aggregates;
+            this.item = item;
+            this.firstRow = firstRow;
+            this.counts = new long[aggregates.length];
+            this.longs = new long[aggregates.length];
+            this.doubles = new double[aggregates.length];
+            for (int i = 0; i < aggregates.length; i++) {
+                if (aggregates[i].kind == Kind.MIN) {
+                    longs[i] = Long.MAX_VALUE;
+                    doubles[i] = Double.POSITIVE_INFINITY;
+                } else if (aggregates[i].kind == Kind.MAX) {
+                    longs[i] = Long.MIN_VALUE;
+                    doubles[i] = Double.NEGATIVE_INFINITY;
+                }
+            }
+        }
+
+        /**
+         * @return values of the group paths, empty if there is no grouping
+         */
+        public List<Object> getKey() {
+            return key;
+        }
+
+        /**
+         * @return number of items for {@code count()}, number of non-null values for other aggregates
+         */
+        public long getCount(final int index) {
+            return counts[index];
+        }
+
+        /**
+         * @return {@code Long} for counts and integral sums, minimums and maximums, {@code Double} for other
+         * aggregates; {@code null} for a minimum, maximum or average of no values
+         */
+        public Object getValue(final int index) {
+            final Aggregate aggregate = aggregates[index];
+            if (aggregate.kind == Kind.COUNT) {
+                return counts[index];
+            }
+            if (counts[index] == 0 && aggregate.kind != Kind.SUM) {
+                return null;
+            }
+            return aggregate.integral ? (Object) getLong(index) : (Object) getDouble(index);
+        }
+
+        /**
+         * @return value of an integral aggregate or a count, 0 if there were no values
+         * @throws IllegalStateException if the aggregate is not integral
+         */
+        public long getLong(final int index) {
+            final Aggregate aggregate = aggregates[index];
+            if (aggregate.kind == Kind.COUNT) {
+                return counts[index];
+            }
+            if (!aggregate.integral) {
+                throw new IllegalStateException(aggregate.label + " is not integral");
+            }
+            return counts[index] == 0 ? 0 : longs[index];
+        }
+
+        /**
+         * @return value of an aggregate as a double, {@code NaN} for a minimum, maximum or average of no values
+         */
+        public double getDouble(final int index) {
+            final Aggregate aggregate = aggregates[index];
+            switch (aggregate.kind) {
+                case COUNT:
+                    return counts[index];
+                case AVG:
+                    return counts[index] == 0 ? Double.NaN : doubles[index] / counts[index];
+                case SUM:
+                    return aggregate.integral ? longs[index] : doubles[index];
+                default:
+                    if (counts[index] == 0) {
+                        return Double.NaN;
+                    }
+                    return aggregate.integral ? longs[index] : doubles[index];
+            }
+        }
+
+        /**
+         * @return values of the aggregates by their labels
+         */
+        public Map<String, Object> getValues() {
+            final Map<String, Object> result = new LinkedHashMap<>();
+            for (int i = 0; i < aggregates.length; i++) {
+                result.put(aggregates[i].label, getValue(i));
+            }
+            return unmodifiableMap(result);
+        }
+
+        void add(final int index, final long value) {
+            counts[index]++;
+            switch (aggregates[index].kind) {
+                case SUM:
+                    longs[index] += value;
+                    break;
+                case MIN:
+                    longs[index] = Math.min(longs[index], value);
+                    break;
+                case MAX:
+                    longs[index] = Math.max(longs[index], value);
+                    break;
+                default:
+                    throw new IllegalStateException(aggregates[index].label + " is not integral");
+            }
+        }
+
+        void add(final int index, final double value) {
+            counts[index]++;
+            switch (aggregates[index].kind) {
+                case SUM:
+                case AVG:
+                    doubles[index] += value;
+                    break;
+                case MIN:
+                    doubles[index] = Math.min(doubles[index], value);
+                    break;
+                case MAX:
+                    doubles[index] = Math.max(doubles[index], value);
+                    break;
+                default:
+                    throw new IllegalStateException(aggregates[index].label + " is not numeric");
+            }
+        }
+
+        void merge(final Group other) {
+            firstRow = Math.min(firstRow, other.firstRow);
+            for (int i = 0; i < aggregates.length; i++) {
+                counts[i] += other.counts[i];
+                switch (aggregates[i].kind) {
+                    case MIN:
+                        longs[i] = Math.min(longs[i], other.longs[i]);
+                        doubles[i] = Math.min(doubles[i], other.doubles[i]);
+                        break;
+                    case MAX:
+                        longs[i] = Math.max(longs[i], other.longs[i]);
+                        doubles[i] = Math.max(doubles[i], other.doubles[i]);
+                        break;
+                    default:
+                        longs[i] += other.longs[i];
+                        doubles[i] += other.doubles[i];
+                        break;
+                }
+            }
+        }
+
+        Group complete(final PathAccessor[] groupAccessors) {
+            final List<Object> values = new ArrayList<>(groupAccessors.length);
+            for (final PathAccessor accessor : groupAccessors) {
+                values.add(accessor.isMultiValued() ? unmodifiableList(accessor.getAll(item)) : accessor.get(item));
+            }
+            this.key = unmodifiableList(values);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValues();
+        }
+    }
+}
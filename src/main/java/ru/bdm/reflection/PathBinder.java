@@ -0,0 +1,486 @@
+package ru.bdm.reflection;
+
+import org.apache.commons.beanutils.ConvertUtils;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.commons.lang3.ClassUtils.primitiveToWrapper;
+import static ru.bdm.reflection.PathAccessor.Access;
+import static ru.bdm.reflection.PathExtractor.PropertyNotFound;
+import static ru.bdm.reflection.PathExtractor.RawCollection;
+import static ru.bdm.reflection.Util.getSetterName;
+import static ru.bdm.reflection.Util.propagate;
+
+/**
+ * Populates objects from flat maps keyed by dotted paths (like {@code owner.name}), the reverse of
+ * {@link PathAccessor}. The paths are compiled once per (class, set of paths) into a tree of setters, so binding
+ * a row costs a map lookup per path and the setter calls.
+ * <p>
+ * Missing intermediate objects are created with the no-arg constructor (or without running constructors
+ * if there is none). A collection in the middle of a path is a hop: the values of the paths going through it
+ * are collections or arrays, the i-th element of every value is bound to the i-th item of the collection.
+ * Existing items are reused by index (in the iteration order for collections other than lists), missing items
+ * are appended. Items are added to the collection after their properties are bound. Keys absent in a row are skipped,
+ * values that don't match the type of the property are converted with {@link ConvertUtils}.
+ * With {@link Access#FIELDS} non-final fields having the names of the properties are written directly.
+ */
+public final class PathBinder<T> {
+
+    private static final ConcurrentHashMap<Key, PathBinder<?>> CACHE = new ConcurrentHashMap<>();
+    private static final Object ABSENT = new Object();
+
+    private final Class<T> type;
+    private final String[] paths;
+    private final Access access;
+    private final Node root;
+
+    private PathBinder(final Class<T> type, final Set<String> paths, final Access access) {
+        this.type = type;
+        this.paths = paths.toArray(new String[0]);
+        this.access = access;
+        this.root = new Node(type);
+        for (int i = 0; i < this.paths.length; i++) {
+            final String[] names = this.paths[i].split("\\.");
+            Node node = root;
+            for (int step = 0; step < names.length; step++) {
+                node = node.child(names[step], this.paths[i], step == names.length - 1, access);
+            }
+            node.leaf = i;
+        }
+        root.complete();
+    }
+
+    /**
+     * @throws PathExtractor.PropertyNotFound if there is no getter or setter for a property on the path
+     */
+    public static <T> PathBinder<T> compile(final @Nonnull Class<T> type, final @Nonnull Collection<String> paths) {
+        return compile(type, paths, Access.GETTERS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PathBinder<T> compile(
+            final @Nonnull Class<T> type,
+            final @Nonnull Collection<String> paths,
+            final @Nonnull Access access
+    ) {
+        return (PathBinder<T>) CACHE.computeIfAbsent(
+                new Key(requireNonNull(type), Collections.unmodifiableSet(new LinkedHashSet<>(paths)), requireNonNull(access)),
+                key -> new PathBinder<>(key.type, key.paths, key.access)
+        );
+    }
+
+    /**
+     * Binds a single row, for many rows with the same keys compile the binder once.
+     */
+    public static <T> T bind(final @Nonnull Class<T> type, final @Nonnull Map<String, ?> row) {
+        return compile(type, row.keySet()).bind(row);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public Access getAccess() {
+        return access;
+    }
+
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(Arrays.asList(paths));
+    }
+
+    public T bind(final @Nonnull Map<String, ?> row) {
+        final T target = type.cast(root.newInstance());
+        bind(row, target);
+        return target;
+    }
+
+    public void bind(final @Nonnull Map<String, ?> row, final @Nonnull T target) {
+        final Object[] values = new Object[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            final Object value = row.get(paths[i]);
+            values[i] = value == null && !row.containsKey(paths[i]) ? ABSENT : value;
+        }
+        bindChildren(root, target, values);
+    }
+
+    public List<T> bindAll(final @Nonnull Collection<? extends Map<String, ?>> rows) {
+        final List<T> result = new ArrayList<>(rows.size());
+        for (final Map<String, ?> row : rows) {
+            result.add(bind(row));
+        }
+        return result;
+    }
+
+    private static void bindChildren(final Node node, final Object target, final Object[] values) {
+        for (final Node child : node.children) {
+            if (!child.isPresent(values)) {
+                continue;
+            }
+            if (child.leaf >= 0 && values[child.leaf] != ABSENT) {
+                child.set(target, values[child.leaf]);
+            }
+            if (child.children.length == 0) {
+                continue;
+            }
+            if (child.hop) {
+                bindItems(child, target, values);
+            } else {
+                Object current = child.get(target);
+                if (current == null) {
+                    current = child.newInstance();
+                    child.set(target, current);
+                }
+                bindChildren(child, current, values);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void bindItems(final Node node, final Object target, final Object[] values) {
+        int count = 0;
+        for (final int leaf : node.subtreeLeaves) {
+            count = Math.max(count, size(values[leaf]));
+        }
+        if (count == 0) {
+            return;
+        }
+        Collection<Object> items = (Collection<Object>) node.get(target);
+        if (items == null) {
+            items = (Collection<Object>) node.newInstance();
+            node.set(target, items);
+        }
+        // items of other collections are reused in the iteration order and added back once they are bound,
+        // so sets see the bound values
+        final List<Object> list = items instanceof List ? (List<Object>) items : new ArrayList<>(items);
+        final Object[] itemValues = new Object[values.length];
+        for (int i = 0; i < count; i++) {
+            Arrays.fill(itemValues, ABSENT);
+            for (final int leaf : node.subtreeLeaves) {
+                itemValues[leaf] = element(values[leaf], i);
+            }
+            final Object existing = i < list.size() ? list.get(i) : null;
+            final Object item = existing != null ? existing : node.newItem();
+            bindChildren(node, item, itemValues);
+            if (existing == null) {
+                if (i < list.size()) {
+                    list.set(i, item);
+                } else {
+                    list.add(item);
+                }
+            }
+        }
+        if (list != items) {
+            items.clear();
+            items.addAll(list);
+        }
+    }
+
+    private static int size(final Object value) {
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        }
+        if (value != null && value != ABSENT && value.getClass().isArray()) {
+            return Array.getLength(value);
+        }
+        return 0;
+    }
+
+    private static Object element(final Object value, final int index) {
+        if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            return index < list.size() ? list.get(index) : ABSENT;
+        }
+        if (value instanceof Collection) {
+            final Collection<?> collection = (Collection<?>) value;
+            if (index >= collection.size()) {
+                return ABSENT;
+            }
+            int i = 0;
+            for (final Object element : collection) {
+                if (i++ == index) {
+                    return element;
+                }
+            }
+        }
+        if (value != null && value != ABSENT && value.getClass().isArray()) {
+            return index < Array.getLength(value) ? Array.get(value, index) : ABSENT;
+        }
+        return ABSENT;
+    }
+
+    private static Object invoke(final Method method, final Object target, final Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw propagate((Exception) cause);
+        } catch (final IllegalAccessException e) {
+            throw propagate(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type.getName() + ":" + Arrays.toString(paths) + (access == Access.GETTERS ? "" : " (" + access + ")");
+    }
+
+    /**
+     * Property on the paths, the root node is the bound class itself.
+     */
+    private static final class Node {
+        final String name;
+        final Class<?> type;
+        final Class<?> wrapperType;
+        final Method getter;
+        final Method setter;
+        final MethodHandle fieldReader;
+        final MethodHandle fieldWriter;
+        final boolean hop;
+        final Class<?> itemType;
+        final Map<String, Node> childrenByName = new LinkedHashMap<>();
+        Node[] children;
+        int[] subtreeLeaves;
+        int leaf = -1;
+
+        Node(final Class<?> type) {
+            this.name = null;
+            this.type = type;
+            this.wrapperType = type;
+            this.getter = null;
+            this.setter = null;
+            this.fieldReader = null;
+            this.fieldWriter = null;
+            this.hop = false;
+            this.itemType = null;
+        }
+
+        Node(final Class<?> owner, final String name, final String path, final boolean last, final Access access) {
+            this.name = name;
+            this.getter = PathAccessor.findGetter(owner, name);
+            final Field field = access == Access.FIELDS ? PathAccessor.findField(owner, name, getter) : null;
+            this.type = getter != null ? getter.getReturnType() : field != null ? field.getType() : findSetterType(owner, name);
+            if (type == null) {
+                throw new PropertyNotFound("can't find property " + name + " in " + owner.getName() + " (path " + path + ")");
+            }
+            this.wrapperType = primitiveToWrapper(type);
+            this.fieldReader = field == null ? null : PathAccessor.fieldReader(field);
+            this.fieldWriter = field == null ? null : PathAccessor.fieldWriter(field);
+            this.setter = fieldWriter == null ? findSetter(owner, name, type) : null;
+            if (!isWritable() && last) {
+                throw new PropertyNotFound("can't find setter for " + name + " in " + owner.getName() + " (path " + path + ")");
+            }
+            this.hop = !last && Collection.class.isAssignableFrom(type);
+            if (hop) {
+                final Member member = getter != null ? getter : field;
+                final Class<?> item = member == null ? null : Util.getCollectionItemType(member);
+                if (item == null) {
+                    throw new RawCollection("collection " + name + " is raw (path " + path + ")");
+                }
+                this.itemType = item;
+            } else {
+                this.itemType = null;
+            }
+        }
+
+        Node child(final String childName, final String path, final boolean last, final Access access) {
+            final Class<?> owner = hop ? itemType : type;
+            final Node child = childrenByName.computeIfAbsent(childName, n -> new Node(owner, n, path, last, access));
+            if (last && !child.isWritable()) {
+                throw new PropertyNotFound("can't find setter for " + childName + " in " + owner.getName() + " (path " + path + ")");
+            }
+            return child;
+        }
+
+        void complete() {
+            children = childrenByName.values().toArray(new Node[0]);
+            final List<Integer> leaves = new ArrayList<>();
+            if (leaf >= 0) {
+                leaves.add(leaf);
+            }
+            for (final Node child : children) {
+                child.complete();
+                for (final int childLeaf : child.subtreeLeaves) {
+                    leaves.add(childLeaf);
+                }
+            }
+            subtreeLeaves = leaves.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        boolean isPresent(final Object[] values) {
+            for (final int i : subtreeLeaves) {
+                if (values[i] != ABSENT) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isWritable() {
+            return setter != null || fieldWriter != null;
+        }
+
+        Object get(final Object target) {
+            if (fieldReader != null) {
+                try {
+                    return (Object) fieldReader.invokeExact(target);
+                } catch (final Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+            return getter == null ? null : invoke(getter, target);
+        }
+
+        void set(final Object target, final Object value) {
+            if (value == null && type.isPrimitive()) {
+                return;
+            }
+            if (!isWritable()) {
+                throw new IllegalStateException("property " + name + " of " + target.getClass().getName() + " is read-only");
+            }
+            final Object converted = value == null || wrapperType.isInstance(value) ? value : ConvertUtils.convert(value, type);
+            if (fieldWriter != null) {
+                try {
+                    fieldWriter.invokeExact(target, converted);
+                } catch (final Throwable e) {
+                    throw rethrow(e);
+                }
+            } else {
+                invoke(setter, target, converted);
+            }
+        }
+
+        private static RuntimeException rethrow(final Throwable e) {
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new IllegalStateException(e);
+        }
+
+        Object newInstance() {
+            return newInstance(type);
+        }
+
+        Object newItem() {
+            return newInstance(itemType);
+        }
+
+        private static Object newInstance(final Class<?> type) {
+            if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                if (type.isAssignableFrom(ArrayList.class)) {
+                    return new ArrayList<>();
+                }
+                if (type.isAssignableFrom(LinkedHashSet.class)) {
+                    return new LinkedHashSet<>();
+                }
+                if (type.isAssignableFrom(TreeSet.class)) {
+                    return new TreeSet<>();
+                }
+                if (type.isAssignableFrom(ArrayDeque.class)) {
+                    return new ArrayDeque<>();
+                }
+                throw new IllegalStateException("can't create an instance of " + type.getName());
+            }
+            final Constructor<?> constructor;
+            try {
+                constructor = type.getDeclaredConstructor();
+            } catch (final NoSuchMethodException e) {
+                return Instantiator.of(type).newInstance();
+            }
+            try {
+                constructor.setAccessible(true);
+                return constructor.newInstance();
+            } catch (final InvocationTargetException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw propagate((Exception) cause);
+            } catch (final Exception e) {
+                throw propagate(e);
+            }
+        }
+
+        private static Class<?> findSetterType(final Class<?> owner, final String name) {
+            for (final Method method : owner.getMethods()) {
+                if (method.getName().equals(getSetterName(name)) && method.getParameterTypes().length == 1
+                        && !Modifier.isStatic(method.getModifiers())) {
+                    return method.getParameterTypes()[0];
+                }
+            }
+            return null;
+        }
+
+        private static Method findSetter(final Class<?> owner, final String name, final Class<?> type) {
+            for (Class<?> clazz = owner; clazz != null; clazz = clazz.getSuperclass()) {
+                try {
+                    final Method setter = clazz.getDeclaredMethod(getSetterName(name), type);
+                    if (Modifier.isStatic(setter.getModifiers())) {
+                        return null;
+                    }
+                    setter.setAccessible(true);
+                    return setter;
+                } catch (final NoSuchMethodException ignored) {
+                    //look in superclass
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Key {
+        final Class<?> type;
+        final Set<String> paths;
+        final Access access;
+
+        Key(final Class<?> type, final Set<String> paths, final Access access) {
+            this.type = type;
+            this.paths = paths;
+            this.access = access;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return type == that.type && paths.equals(that.paths) && access == that.access;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, paths, access);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Numbers of objects by the values of some paths (see {@link PathKeyStrategy}), a group is keyed by its first
+ * added object. Counts are kept in a {@code long[]} next to the keys, so counting allocates nothing but the arrays
+ * when the table grows. Open addressing, not thread-safe.
+ */
+public final class PathCounter<T> extends OpenHashTable<T> {
+
+    private long[] counts;
+
+    public PathCounter(final @Nonnull PathKeyStrategy<? super T> strategy) {
+        this(strategy, 0);
+    }
+
+    public PathCounter(final @Nonnull PathKeyStrategy<? super T> strategy, final int expectedSize) {
+        super(strategy, expectedSize);
+        this.counts = new long[capacity()];
+    }
+
+    /**
+     * @return number of objects equal to the given one, including it
+     */
+    public long add(final @Nonnull T t) {
+        final int slot = insert(t);
+        return ++counts[slot < 0 ? -slot - 1 : slot];
+    }
+
+    public long getCount(final @Nonnull T t) {
+        final int slot = find(t);
+        return slot < 0 ? 0 : counts[slot];
+    }
+
+    public void forEach(final @Nonnull ObjLongConsumer<? super T> consumer) {
+        for (int slot = 0; slot < counts.length; slot++) {
+            if (counts[slot] != 0) {
+                consumer.accept(keyAt(slot), counts[slot]);
+            }
+        }
+    }
+
+    @Override
+    void rehashed(final int capacity, final int[] newSlots) {
+        final long[] newCounts = new long[capacity];
+        for (int slot = 0; slot < newSlots.length; slot++) {
+            if (newSlots[slot] >= 0) {
+                newCounts[newSlots[slot]] = counts[slot];
+            }
+        }
+        counts = newCounts;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Detects which paths of two objects have different values, e.g. an entity and its snapshot.
+ * <p>
+ * Getter chains are resolved once per (class, path) by {@link PathAccessor}. Leaf values are compared
+ * with {@link java.util.Objects#deepEquals(Object, Object)}; paths with masked collection hops are compared
+ * structurally (see {@link PathAccessor}). If only one of the objects is {@code null} every path is changed.
+ * Numeric primitive values are compared without boxing, so nothing is allocated for unchanged objects unless
+ * a collection hop is not a {@link java.util.RandomAccess} list (its items are iterated).
+ */
+public final class PathDiff<T> {
+
+    private final PathAccessor[] accessors;
+
+    public PathDiff(final @Nonnull Class<T> type, final @Nonnull String... paths) {
+        if (paths.length == 0) {
+            throw new IllegalArgumentException("no paths defined");
+        }
+        this.accessors = PathAccessor.compile(type, paths);
+    }
+
+    /**
+     * Stops at the first changed path.
+     */
+    public boolean isChanged(final T left, final T right) {
+        if (left == right) {
+            return false;
+        }
+        if (left == null || right == null) {
+            return true;
+        }
+        for (final PathAccessor accessor : accessors) {
+            if (!accessor.valuesEqual(left, right)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return changed paths in the order of the paths of this diff
+     */
+    public List<String> diff(final T left, final T right) {
+        if (left == right) {
+            return emptyList();
+        }
+        List<String> result = null;
+        for (final PathAccessor accessor : accessors) {
+            if (left == null || right == null || !accessor.valuesEqual(left, right)) {
+                if (result == null) {
+                    result = new ArrayList<>(accessors.length);
+                }
+                result.add(accessor.getPath());
+            }
+        }
+        return result == null ? emptyList() : unmodifiableList(result);
+    }
+
+    /**
+     * Compares the objects at the same positions of the lists.
+     *
+     * @return changed paths for every pair
+     */
+    public List<List<String>> diffAll(final @Nonnull List<? extends T> left, final @Nonnull List<? extends T> right) {
+        checkSizes(left, right);
+        final List<List<String>> result = new ArrayList<>(left.size());
+        final Iterator<? extends T> rightIterator = right.iterator();
+        for (final T item : left) {
+            result.add(diff(item, rightIterator.next()));
+        }
+        return result;
+    }
+
+    /**
+     * Compares the objects at the same positions of the lists, stops at the first changed pair.
+     */
+    public boolean isAnyChanged(final @Nonnull List<? extends T> left, final @Nonnull List<? extends T> right) {
+        checkSizes(left, right);
+        final Iterator<? extends T> rightIterator = right.iterator();
+        for (final T item : left) {
+            if (isChanged(item, rightIterator.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void checkSizes(final List<?> left, final List<?> right) {
+        if (left.size() != right.size()) {
+            throw new IllegalArgumentException("lists have different sizes: " + left.size() + " and " + right.size());
+        }
+    }
+}
@@ -41,6 +41,8 @@ public class PathExtractor {
     public static <T> String getPath(final Class<T> entityClass, final Example<T> example) {
         final Example<T> checkedExample = requireNonNull(example);
 
+        final Object event = Events.beginPathExtraction();
+
         final Path pathContainer = new Path();
 
         final Object proxy = createProxy(requireNonNull(entityClass), pathContainer);
@@ -51,6 +53,7 @@ public class PathExtractor {
         if (path == null) {
             throw new ExampleNotProvided("no path defined");
         }
+        Events.endPathExtraction(event, entityClass, path);
         return path;
     }
 
@@ -76,13 +79,7 @@ public class PathExtractor {
     protected static Object createProxy(final Class<?> entityClass, final Path path) {
         final String currentPath = path.getValue();
 
-        final Enhancer enhancer = new Enhancer();
-        enhancer.setClassLoader(PathExtractor.class.getClassLoader());
-        if (entityClass.isInterface()) {
-            enhancer.setInterfaces(new Class<?>[]{entityClass});
-        } else {
-            enhancer.setSuperclass(entityClass);
-        }
+        final Enhancer enhancer = createProxyEnhancer(entityClass);
         enhancer.setCallback((MethodInterceptor) (o, method, args, proxy) -> {
             final String pathValue = getPath(method, currentPath);
             path.setValue(pathValue);
@@ -96,7 +93,7 @@ public class PathExtractor {
             final Class<?> primitive = returnType.isPrimitive() ? returnType : wrapperToPrimitive(returnType);
             if (primitive != null) {
                 return convert((Object) null, primitive);
-            } else if (isFinal(returnType.getModifiers()) || DO_NOT_PROXY.stream().anyMatch(clazz -> clazz.isAssignableFrom(returnType))) {
+            } else if (!isProxied(returnType)) {
                 return null;
             }
             return createProxy(returnType, path);
@@ -104,6 +101,36 @@ public class PathExtractor {
         return enhancer.create();
     }
 
+    /**
+     * Proxy classes have fixed names, a class pregenerated by {@link ProxyPregenerator} is loaded instead of generating it.
+     */
+    static Enhancer createProxyEnhancer(final Class<?> entityClass) {
+        final Enhancer enhancer = new Enhancer();
+        enhancer.setClassLoader(PathExtractor.class.getClassLoader());
+        enhancer.setNamingPolicy(GeneratedClasses.namingPolicy(
+                GeneratedClasses.getClassName(entityClass, "$$ProxiedByPathExtractor")
+        ));
+        enhancer.setAttemptLoad(true);
+        enhancer.setStrategy(Events.generatorStrategy("PathExtractor", entityClass.getName()));
+        if (entityClass.isInterface()) {
+            enhancer.setInterfaces(new Class<?>[]{entityClass});
+        } else {
+            enhancer.setSuperclass(entityClass);
+        }
+        enhancer.setCallbackType(MethodInterceptor.class);
+        return enhancer;
+    }
+
+    /**
+     * @return true if a getter returning the type returns a proxy, except for collections
+     */
+    static boolean isProxied(final Class<?> type) {
+        return !type.isPrimitive()
+                && wrapperToPrimitive(type) == null
+                && !isFinal(type.getModifiers())
+                && DO_NOT_PROXY.stream().noneMatch(clazz -> clazz.isAssignableFrom(type));
+    }
+
     public static <T> T mask(final Collection<T> collection) {
         return mask(collection, null);
     }
@@ -115,21 +142,32 @@ public class PathExtractor {
     ) {
         final MaskInfo maskInfo = new MaskInfo(path, collectionItemType);
 
+        final Enhancer enhancer = createCollectionProxyEnhancer(collectionType);
+        enhancer.setCallback((MethodInterceptor) (obj, method, args, proxy) -> {
+            if (method.getDeclaringClass() == Masked.class) {
+                return maskInfo;
+            }
+            throw new UnsupportedMethod("only methods of " + Masked.class.getName() + " are supported");
+        });
+        return enhancer.create();
+    }
+
+    static Enhancer createCollectionProxyEnhancer(final Class<?> collectionType) {
         final Enhancer enhancer = new Enhancer();
         enhancer.setClassLoader(PathExtractor.class.getClassLoader());
+        enhancer.setNamingPolicy(GeneratedClasses.namingPolicy(
+                GeneratedClasses.getClassName(collectionType, "$$MaskedByPathExtractor")
+        ));
+        enhancer.setAttemptLoad(true);
+        enhancer.setStrategy(Events.generatorStrategy("PathExtractor", collectionType.getName()));
         if (collectionType.isInterface()) {
             enhancer.setInterfaces(new Class<?>[]{collectionType, Masked.class});
         } else {
             enhancer.setInterfaces(new Class<?>[]{Masked.class});
             enhancer.setSuperclass(collectionType);
         }
-        enhancer.setCallback((MethodInterceptor) (obj, method, args, proxy) -> {
-            if (method.getDeclaringClass() == Masked.class) {
-                return maskInfo;
-            }
-            throw new UnsupportedMethod("only methods of " + Masked.class.getName() + " are supported");
-        });
-        return enhancer.create();
+        enhancer.setCallbackType(MethodInterceptor.class);
+        return enhancer;
     }
 
     private static String getPath(final Method method, final String pathPrefix) {
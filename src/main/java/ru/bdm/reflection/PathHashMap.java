@@ -0,0 +1,81 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Map keyed by the values of some paths of the keys (see {@link PathKeyStrategy}); the first added object of a group
+ * of equal objects is the key of the group. Open addressing, not thread-safe.
+ */
+public final class PathHashMap<K, V> extends OpenHashTable<K> {
+
+    private Object[] values;
+
+    public PathHashMap(final @Nonnull PathKeyStrategy<? super K> strategy) {
+        this(strategy, 0);
+    }
+
+    public PathHashMap(final @Nonnull PathKeyStrategy<? super K> strategy, final int expectedSize) {
+        super(strategy, expectedSize);
+        this.values = new Object[capacity()];
+    }
+
+    public V get(final @Nonnull K key) {
+        final int slot = find(key);
+        return slot < 0 ? null : valueAt(slot);
+    }
+
+    public boolean containsKey(final @Nonnull K key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @return previous value of the key
+     */
+    public V put(final @Nonnull K key, final V value) {
+        final int slot = insert(key);
+        if (slot < 0) {
+            values[-slot - 1] = value;
+            return null;
+        }
+        final V previous = valueAt(slot);
+        values[slot] = value;
+        return previous;
+    }
+
+    public V computeIfAbsent(final @Nonnull K key, final @Nonnull Function<? super K, ? extends V> mappingFunction) {
+        final int slot = insert(key);
+        if (slot >= 0) {
+            return valueAt(slot);
+        }
+        final V value = mappingFunction.apply(key);
+        values[-slot - 1] = value;
+        return value;
+    }
+
+    public void forEach(final @Nonnull BiConsumer<? super K, ? super V> consumer) {
+        for (int slot = 0; slot < values.length; slot++) {
+            final K key = keyAt(slot);
+            if (key != null) {
+                consumer.accept(key, valueAt(slot));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(final int slot) {
+        return (V) values[slot];
+    }
+
+    @Override
+    void rehashed(final int capacity, final int[] newSlots) {
+        final Object[] newValues = new Object[capacity];
+        for (int slot = 0; slot < newSlots.length; slot++) {
+            if (newSlots[slot] >= 0) {
+                newValues[newSlots[slot]] = values[slot];
+            }
+        }
+        values = newValues;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Set of objects distinct by the values of some paths (see {@link PathKeyStrategy}); the first added object of
+ * a group of equal objects is kept. Open addressing, not thread-safe.
+ */
+public final class PathHashSet<T> extends OpenHashTable<T> {
+
+    public PathHashSet(final @Nonnull PathKeyStrategy<? super T> strategy) {
+        this(strategy, 0);
+    }
+
+    public PathHashSet(final @Nonnull PathKeyStrategy<? super T> strategy, final int expectedSize) {
+        super(strategy, expectedSize);
+    }
+
+    /**
+     * @return false if an equal object is in the set already
+     */
+    public boolean add(final @Nonnull T t) {
+        return insert(t) < 0;
+    }
+
+    public boolean contains(final @Nonnull T t) {
+        return find(t) >= 0;
+    }
+
+    /**
+     * @return object of the set equal to the given one or {@code null} if there is none
+     */
+    public T get(final @Nonnull T t) {
+        final int slot = find(t);
+        return slot < 0 ? null : keyAt(slot);
+    }
+
+    @Override
+    void rehashed(final int capacity, final int[] newSlots) {
+        //no values
+    }
+}
@@ -0,0 +1,173 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * Hash index of objects by the values of one or more paths.
+ * <p>
+ * With a single path the key is the path value, with several paths the key is a {@link List} of the values
+ * (see {@link #key(Object...)}). An object reached through a masked collection hop is indexed under every
+ * value of the path. Not thread-safe; the index is not updated when indexed objects change.
+ */
+public class PathIndex<T, K> {
+
+    private final PathAccessor[] accessors;
+    private final Map<K, List<T>> index = new HashMap<>();
+
+    public PathIndex(final @Nonnull Class<T> type, final @Nonnull String... paths) {
+        this(PathAccessor.compile(type, paths));
+    }
+
+    private PathIndex(final PathAccessor[] accessors) {
+        if (accessors.length == 0) {
+            throw new IllegalArgumentException("no paths defined");
+        }
+        this.accessors = accessors;
+    }
+
+    public static <T, K> PathIndex<T, K> build(
+            final @Nonnull Class<T> type,
+            final @Nonnull Collection<? extends T> items,
+            final @Nonnull String... paths
+    ) {
+        final PathIndex<T, K> result = new PathIndex<>(type, paths);
+        result.addAll(items);
+        return result;
+    }
+
+    /**
+     * Same as {@link #build(Class, Collection, String...)}, but splits the items between the threads
+     * of the common fork/join pool; the order of objects under each key is the order of the items.
+     */
+    public static <T, K> PathIndex<T, K> buildParallel(
+            final @Nonnull Class<T> type,
+            final @Nonnull Collection<? extends T> items,
+            final @Nonnull String... paths
+    ) {
+        final PathAccessor[] accessors = PathAccessor.compile(type, paths);
+        return items.parallelStream().collect(
+                () -> new PathIndex<T, K>(accessors),
+                PathIndex::add,
+                PathIndex::merge
+        );
+    }
+
+    public static List<Object> key(final Object... values) {
+        return Arrays.asList(values);
+    }
+
+    public void add(final T item) {
+        forEachKey(item, key -> index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(item));
+    }
+
+    public void addAll(final @Nonnull Collection<? extends T> items) {
+        for (final T item : items) {
+            add(item);
+        }
+    }
+
+    /**
+     * Removes the same (not equal) object, keys are computed from its current state.
+     *
+     * @return true if the object was indexed
+     */
+    public boolean remove(final T item) {
+        final boolean[] removed = new boolean[1];
+        forEachKey(item, key -> {
+            final List<T> items = index.get(key);
+            if (items == null) {
+                return;
+            }
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i) == item) {
+                    items.remove(i);
+                    removed[0] = true;
+                    break;
+                }
+            }
+            if (items.isEmpty()) {
+                index.remove(key);
+            }
+        });
+        return removed[0];
+    }
+
+    public List<T> get(final K key) {
+        final List<T> items = index.get(key);
+        return items == null ? emptyList() : unmodifiableList(items);
+    }
+
+    public T getFirst(final K key) {
+        final List<T> items = index.get(key);
+        return items == null ? null : items.get(0);
+    }
+
+    public boolean containsKey(final K key) {
+        return index.containsKey(key);
+    }
+
+    public Set<K> keys() {
+        return unmodifiableSet(index.keySet());
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private void merge(final PathIndex<T, K> other) {
+        other.index.forEach((key, items) -> index.merge(key, items, (left, right) -> {
+            left.addAll(right);
+            return left;
+        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void forEachKey(final T item, final Consumer<K> consumer) {
+        if (accessors.length == 1) {
+            final PathAccessor accessor = accessors[0];
+            if (accessor.isMultiValued()) {
+                new LinkedHashSet<>(accessor.getAll(item)).forEach(value -> consumer.accept((K) value));
+            } else {
+                consumer.accept((K) accessor.get(item));
+            }
+            return;
+        }
+        final List<List<Object>> values = new ArrayList<>(accessors.length);
+        for (final PathAccessor accessor : accessors) {
+            values.add(accessor.isMultiValued()
+                    ? new ArrayList<>(new LinkedHashSet<>(accessor.getAll(item)))
+                    : singletonList(accessor.get(item)));
+        }
+        forEachCombination(values, new Object[accessors.length], 0, (Consumer<List<Object>>) consumer);
+    }
+
+    private static void forEachCombination(
+            final List<List<Object>> values,
+            final Object[] current,
+            final int position,
+            final Consumer<List<Object>> consumer
+    ) {
+        if (position == current.length) {
+            consumer.accept(key(current.clone()));
+            return;
+        }
+        for (final Object value : values.get(position)) {
+            current[position] = value;
+            forEachCombination(values, current, position + 1, consumer);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package ru.bdm.reflection;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static org.apache.commons.lang3.ClassUtils.primitiveToWrapper;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IMUL;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LCMP;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_6;
+import static org.objectweb.asm.Type.getInternalName;
+import static org.objectweb.asm.Type.getMethodDescriptor;
+import static ru.bdm.reflection.PathKeyStrategy.Hasher;
+import static ru.bdm.reflection.Util.propagate;
+
+/**
+ * Generates {@link Hasher}s calling the getters of the paths directly: values are hashed and compared without
+ * boxing primitives or collecting anything. Only single-valued paths of public getters can be generated.
+ * <p>
+ * The class is defined in the class loader of the keyed type; its name and a constant field describe the paths,
+ * so a class generated for the same paths is reused.
+ */
+final class PathKeyGenerator {
+
+    private static final String KEY_FIELD = "key$paths";
+    private static final String HASHER = getInternalName(Hasher.class);
+    private static final String VALUE_HASH_DESCRIPTOR = "(Ljava/lang/Object;)I";
+    private static final String VALUE_EQUALS_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/Object;)Z";
+
+    private PathKeyGenerator() {
+    }
+
+    /**
+     * @return hasher with generated methods or {@code null} if some of the paths can't be read by generated code
+     */
+    static Hasher generate(final Class<?> type, final PathAccessor[] accessors) {
+        final ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null || GeneratedClasses.find(Hasher.class.getName(), classLoader) != Hasher.class
+                || !isPublic(type)) {
+            return null;
+        }
+        final Method[][] getters = new Method[accessors.length][];
+        final StringBuilder key = new StringBuilder();
+        for (int i = 0; i < accessors.length; i++) {
+            if (accessors[i].isMultiValued() || accessors[i].getAccess() != PathAccessor.Access.GETTERS) {
+                return null;
+            }
+            getters[i] = accessors[i].getGetters();
+            for (final Method getter : getters[i]) {
+                if (!Modifier.isPublic(getter.getModifiers()) || !isPublic(getter.getDeclaringClass())) {
+                    return null;
+                }
+            }
+            key.append(accessors[i].getPath()).append(',');
+        }
+        final Class<?> hasherClass = GeneratedClasses.findOrDefine(
+                GeneratedClasses.getClassName(type, "$$PathKey$$" + Integer.toHexString(key.toString().hashCode())),
+                classLoader,
+                clazz -> key.toString().equals(getKey(clazz)),
+                name -> Events.generate("PathKeyStrategy", name, key.toString(), () ->
+                        generateBytes(name, key.toString(), type, getters)
+                )
+        );
+        try {
+            return (Hasher) hasherClass.getDeclaredConstructor().newInstance();
+        } catch (final Exception e) {
+            throw propagate(e);
+        }
+    }
+
+    private static boolean isPublic(final Class<?> type) {
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getEnclosingClass()) {
+            if (!Modifier.isPublic(clazz.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object getKey(final Class<?> clazz) {
+        try {
+            return clazz.getField(KEY_FIELD).get(null);
+        } catch (final NoSuchFieldException e) {
+            return null;
+        } catch (final IllegalAccessException e) {
+            throw propagate(e);
+        }
+    }
+
+    private static byte[] generateBytes(final String className, final String key, final Class<?> type, final Method[][] getters) {
+        final String internalName = className.replace('.', '/');
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, internalName, null, HASHER, null);
+        cw.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, KEY_FIELD, "Ljava/lang/String;", null, key).visitEnd();
+
+        final MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, HASHER, "<init>", "()V");
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        generateHashCode(cw, type, getters);
+        generateEquals(cw, type, getters);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * {@code result = 31 * result + hash} for every path, like {@link PathKeyStrategy#hashCode(Object)} does it.
+     */
+    private static void generateHashCode(final ClassWriter cw, final Class<?> type, final Method[][] getters) {
+        final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "keyHashCode", "(Ljava/lang/Object;)I", null, null);
+        mv.visitCode();
+        mv.visitInsn(ICONST_1);
+        mv.visitVarInsn(ISTORE, 2);
+        for (final Method[] path : getters) {
+            final Method last = path[path.length - 1];
+            final Class<?> valueType = last.getReturnType();
+            final Label end = new Label();
+            if (valueType.isPrimitive()) {
+                final Label isNull = new Label();
+                readParent(mv, 1, type, path);
+                mv.visitInsn(DUP);
+                mv.visitJumpInsn(IFNULL, isNull);
+                invoke(mv, last);
+                final Class<?> wrapper = primitiveToWrapper(valueType);
+                mv.visitMethodInsn(
+                        INVOKESTATIC, getInternalName(wrapper), "hashCode", "(" + Type.getDescriptor(valueType) + ")I"
+                );
+                mv.visitJumpInsn(GOTO, end);
+                mv.visitLabel(isNull);
+                mv.visitInsn(POP);
+                mv.visitInsn(ICONST_0);
+            } else {
+                readValue(mv, 1, type, path);
+                mv.visitMethodInsn(INVOKESTATIC, HASHER, "valueHashCode", VALUE_HASH_DESCRIPTOR);
+            }
+            mv.visitLabel(end);
+            mv.visitVarInsn(ILOAD, 2);
+            mv.visitIntInsn(BIPUSH, 31);
+            mv.visitInsn(IMUL);
+            mv.visitInsn(IADD);
+            mv.visitVarInsn(ISTORE, 2);
+        }
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Compares path by path, a path of a primitive is equal if both parents are {@code null}.
+     */
+    private static void generateEquals(final ClassWriter cw, final Class<?> type, final Method[][] getters) {
+        final MethodVisitor mv = cw.visitMethod(
+                ACC_PUBLIC, "keyEquals", "(Ljava/lang/Object;Ljava/lang/Object;)Z", null, null
+        );
+        mv.visitCode();
+        final Label notEqual = new Label();
+        for (final Method[] path : getters) {
+            final Method last = path[path.length - 1];
+            final Class<?> valueType = last.getReturnType();
+            if (valueType.isPrimitive()) {
+                final Label leftNotNull = new Label();
+                final Label next = new Label();
+                readParent(mv, 1, type, path);
+                mv.visitVarInsn(ASTORE, 3);
+                readParent(mv, 2, type, path);
+                mv.visitVarInsn(ASTORE, 4);
+                mv.visitVarInsn(ALOAD, 3);
+                mv.visitJumpInsn(IFNONNULL, leftNotNull);
+                mv.visitVarInsn(ALOAD, 4);
+                mv.visitJumpInsn(IFNULL, next);
+                mv.visitJumpInsn(GOTO, notEqual);
+                mv.visitLabel(leftNotNull);
+                mv.visitVarInsn(ALOAD, 4);
+                mv.visitJumpInsn(IFNULL, notEqual);
+                mv.visitVarInsn(ALOAD, 3);
+                invoke(mv, last);
+                mv.visitVarInsn(ALOAD, 4);
+                invoke(mv, last);
+                if (valueType == long.class) {
+                    mv.visitInsn(LCMP);
+                    mv.visitJumpInsn(IFNE, notEqual);
+                } else if (valueType == double.class || valueType == float.class) {
+                    final Class<?> wrapper = primitiveToWrapper(valueType);
+                    final String descriptor = Type.getDescriptor(valueType);
+                    mv.visitMethodInsn(INVOKESTATIC, getInternalName(wrapper), "compare", "(" + descriptor + descriptor + ")I");
+                    mv.visitJumpInsn(IFNE, notEqual);
+                } else {
+                    mv.visitJumpInsn(IF_ICMPNE, notEqual);
+                }
+                mv.visitLabel(next);
+            } else {
+                readValue(mv, 1, type, path);
+                readValue(mv, 2, type, path);
+                mv.visitMethodInsn(INVOKESTATIC, HASHER, "valueEquals", VALUE_EQUALS_DESCRIPTOR);
+                mv.visitJumpInsn(IFEQ, notEqual);
+            }
+        }
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(notEqual);
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Pushes the object the last getter of the path is called on, or {@code null} if the path is broken before it.
+     */
+    private static void readParent(final MethodVisitor mv, final int local, final Class<?> type, final Method[] path) {
+        read(mv, local, type, path, path.length - 1);
+    }
+
+    /**
+     * Pushes the value of the path, {@code null} if the path is broken.
+     */
+    private static void readValue(final MethodVisitor mv, final int local, final Class<?> type, final Method[] path) {
+        read(mv, local, type, path, path.length);
+    }
+
+    private static void read(final MethodVisitor mv, final int local, final Class<?> type, final Method[] path, final int steps) {
+        final Label end = new Label();
+        mv.visitVarInsn(ALOAD, local);
+        mv.visitTypeInsn(CHECKCAST, getInternalName(type));
+        for (int step = 0; step < steps; step++) {
+            if (step > 0) {
+                final Label notNull = new Label();
+                mv.visitInsn(DUP);
+                mv.visitJumpInsn(IFNONNULL, notNull);
+                mv.visitJumpInsn(GOTO, end);
+                mv.visitLabel(notNull);
+            }
+            invoke(mv, path[step]);
+        }
+        mv.visitLabel(end);
+    }
+
+    private static void invoke(final MethodVisitor mv, final Method getter) {
+        final Class<?> owner = getter.getDeclaringClass();
+        mv.visitMethodInsn(
+                owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL,
+                getInternalName(owner),
+                getter.getName(),
+                getMethodDescriptor(getter)
+        );
+    }
+}
@@ -0,0 +1,177 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Equality and hash code of objects by the values of some paths, so objects can be deduplicated and grouped
+ * by a combination of nested properties without building key objects.
+ * <p>
+ * Values are compared like {@link PathDiff} compares them, multi-valued paths are compared structurally.
+ * Single-valued paths of public getters are read by a generated {@link Hasher} calling the getters directly,
+ * other paths are read by {@link PathAccessor}s. Used by {@link PathHashSet}, {@link PathHashMap}
+ * and {@link PathCounter}.
+ */
+public final class PathKeyStrategy<T> {
+
+    private static final ConcurrentHashMap<Key, Hasher> HASHERS = new ConcurrentHashMap<>();
+
+    private final Class<T> type;
+    private final PathAccessor[] accessors;
+    private final Hasher hasher;
+
+    public PathKeyStrategy(final @Nonnull Class<T> type, final @Nonnull String... paths) {
+        if (paths.length == 0) {
+            throw new IllegalArgumentException("no paths defined");
+        }
+        this.type = type;
+        this.accessors = PathAccessor.compile(type, paths);
+        this.hasher = HASHERS.computeIfAbsent(new Key(type, Arrays.asList(paths)), key -> {
+            final Hasher generated = PathKeyGenerator.generate(type, accessors);
+            return generated == null ? new AccessorHasher(accessors) : generated;
+        });
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public List<String> getPaths() {
+        final List<String> result = new ArrayList<>(accessors.length);
+        for (final PathAccessor accessor : accessors) {
+            result.add(accessor.getPath());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public int hashCode(final @Nonnull T t) {
+        return hasher.keyHashCode(t);
+    }
+
+    public boolean equals(final @Nonnull T left, final @Nonnull T right) {
+        return left == right || hasher.keyEquals(left, right);
+    }
+
+    /**
+     * @return first object of every group of equal objects, in the order of the objects
+     */
+    public List<T> distinct(final @Nonnull Iterable<? extends T> objects) {
+        final PathHashSet<T> set = new PathHashSet<>(this);
+        final List<T> result = new ArrayList<>();
+        for (final T t : objects) {
+            if (set.add(t)) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return numbers of equal objects, keyed by the first object of every group
+     */
+    public PathCounter<T> count(final @Nonnull Iterable<? extends T> objects) {
+        final PathCounter<T> counter = new PathCounter<>(this);
+        for (final T t : objects) {
+            counter.add(t);
+        }
+        return counter;
+    }
+
+    @Override
+    public String toString() {
+        return type.getName() + ":" + getPaths();
+    }
+
+    /**
+     * Hash code and equality of the keys, {@code result = 31 * result + hash} over the paths.
+     * Public to be extended by the generated classes defined in the class loaders of the keyed types.
+     */
+    public abstract static class Hasher {
+
+        protected Hasher() {
+        }
+
+        public abstract int keyHashCode(Object key);
+
+        public abstract boolean keyEquals(Object left, Object right);
+
+        protected static int valueHashCode(final Object value) {
+            if (value == null) {
+                return 0;
+            }
+            return value.getClass().isArray() ? Arrays.deepHashCode(new Object[]{value}) : value.hashCode();
+        }
+
+        /**
+         * Same as {@link Objects#deepEquals(Object, Object)}, but the arrays are checked for after {@code equals}.
+         */
+        protected static boolean valueEquals(final Object left, final Object right) {
+            if (left == right) {
+                return true;
+            }
+            if (left == null || right == null) {
+                return false;
+            }
+            return left.equals(right) || left.getClass().isArray() && Objects.deepEquals(left, right);
+        }
+    }
+
+    private static final class AccessorHasher extends Hasher {
+        private final PathAccessor[] accessors;
+
+        AccessorHasher(final PathAccessor[] accessors) {
+            this.accessors = accessors;
+        }
+
+        @Override
+        public int keyHashCode(final Object key) {
+            int result = 1;
+            for (final PathAccessor accessor : accessors) {
+                result = 31 * result + accessor.valuesHashCode(key);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean keyEquals(final Object left, final Object right) {
+            for (final PathAccessor accessor : accessors) {
+                if (!accessor.valuesEqual(left, right)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Key {
+        final Class<?> type;
+        final List<String> paths;
+
+        Key(final Class<?> type, final List<String> paths) {
+            this.type = type;
+            this.paths = paths;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return type == that.type && paths.equals(that.paths);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, paths);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.ClassUtils.primitiveToWrapper;
+
+/**
+ * Predicate over the values of paths (as produced by {@link PathExtractor} and {@link PathExtractorJava8}):
+ * <pre>
+ * PathPredicate&lt;Pet&gt; predicate = PathPredicate.path(Pet.class, "owner.name").eq("john")
+ *         .and(PathPredicate.path(Pet.class, "owner.relatives.birth").all().lt(date));
+ * </pre>
+ * Getter chains are resolved and comparison values are checked when the predicate is built.
+ * A condition on a path with masked collection hops holds if it holds for any value of the path,
+ * or for all of them (and for no values at all) after {@link Condition#all()}. A {@code null} in the middle
+ * of a single-valued path is a {@code null} value, it matches only {@link Condition#isNull()},
+ * {@link Condition#ne(Object)} and negations.
+ */
+public final class PathPredicate<T> implements Predicate<T> {
+
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final Class<T> type;
+    private final Predicate<Object> predicate;
+
+    private PathPredicate(final Class<T> type, final Predicate<Object> predicate) {
+        this.type = type;
+        this.predicate = predicate;
+    }
+
+    public static <T> Condition<T> path(final @Nonnull Class<T> type, final @Nonnull String path) {
+        return new Condition<>(type, PathAccessor.compile(type, path), false);
+    }
+
+    @Override
+    public boolean test(final T t) {
+        return predicate.test(t);
+    }
+
+    @Override
+    public PathPredicate<T> and(final @Nonnull Predicate<? super T> other) {
+        return new PathPredicate<>(type, new And(join(And.class, predicate, toObjectPredicate(other))));
+    }
+
+    @Override
+    public PathPredicate<T> or(final @Nonnull Predicate<? super T> other) {
+        return new PathPredicate<>(type, new Or(join(Or.class, predicate, toObjectPredicate(other))));
+    }
+
+    @Override
+    public PathPredicate<T> negate() {
+        return new PathPredicate<>(type, predicate instanceof Not ? ((Not) predicate).predicate : new Not(predicate));
+    }
+
+    public PathPredicate<T> not() {
+        return negate();
+    }
+
+    /**
+     * @return matching items in the order of the list
+     */
+    public List<T> filter(final @Nonnull Collection<? extends T> items) {
+        final List<T> result = new ArrayList<>();
+        for (final T item : items) {
+            if (predicate.test(item)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #filter(Collection)}, but large lists are split between the threads
+     * of the common fork/join pool.
+     */
+    public List<T> filterParallel(final @Nonnull List<? extends T> items) {
+        if (items.size() < PARALLEL_THRESHOLD) {
+            return filter(items);
+        }
+        return items.parallelStream().filter(predicate).collect(Collectors.<T>toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Predicate<Object> toObjectPredicate(final Predicate<? super T> other) {
+        if (other instanceof PathPredicate) {
+            final PathPredicate<?> pathPredicate = (PathPredicate<?>) other;
+            if (!pathPredicate.type.isAssignableFrom(type)) {
+                throw new IllegalArgumentException("predicate on " + pathPredicate.type.getName()
+                        + " can't be applied to " + type.getName());
+            }
+            return pathPredicate.predicate;
+        }
+        return obj -> ((Predicate<Object>) other).test(obj);
+    }
+
+    /**
+     * Flattens nested nodes of the same kind, so {@code a.and(b).and(c)} is a single node.
+     */
+    private static Predicate<Object>[] join(
+            final Class<? extends Junction> kind,
+            final Predicate<Object> left,
+            final Predicate<Object> right
+    ) {
+        final List<Predicate<Object>> predicates = new ArrayList<>();
+        for (final Predicate<Object> predicate : Arrays.asList(left, right)) {
+            if (kind.isInstance(predicate)) {
+                predicates.addAll(Arrays.asList(((Junction) predicate).predicates));
+            } else {
+                predicates.add(predicate);
+            }
+        }
+        @SuppressWarnings("unchecked") final Predicate<Object>[] result = predicates.toArray(new Predicate[0]);
+        return result;
+    }
+
+    /**
+     * Condition on the values of a path.
+     */
+    public static final class Condition<T> {
+        private final Class<T> type;
+        private final PathAccessor accessor;
+        private final boolean all;
+
+        private Condition(final Class<T> type, final PathAccessor accessor, final boolean all) {
+            this.type = type;
+            this.accessor = accessor;
+            this.all = all;
+        }
+
+        /**
+         * For a path with masked collection hops the condition must hold for every value of the path.
+         */
+        public Condition<T> all() {
+            return new Condition<>(type, accessor, true);
+        }
+
+        /**
+         * For a path with masked collection hops the condition must hold for at least one value of the path (default).
+         */
+        public Condition<T> any() {
+            return new Condition<>(type, accessor, false);
+        }
+
+        /**
+         * @throws IllegalArgumentException if the value is not an instance of the type of the path
+         */
+        public PathPredicate<T> eq(final Object value) {
+            return value == null ? isNull() : matches(new Eq(check(value)));
+        }
+
+        /**
+         * @throws IllegalArgumentException if the value is not an instance of the type of the path
+         */
+        public PathPredicate<T> ne(final Object value) {
+            return value == null ? notNull() : matches(new Eq(check(value)).negate());
+        }
+
+        public PathPredicate<T> isNull() {
+            return matches(Objects::isNull);
+        }
+
+        public PathPredicate<T> notNull() {
+            return matches(Objects::nonNull);
+        }
+
+        /**
+         * @throws IllegalArgumentException if a value is not an instance of the type of the path
+         */
+        public PathPredicate<T> in(final @Nonnull Object... values) {
+            if (values.length == 1) {
+                return eq(values[0]);
+            }
+            for (final Object value : values) {
+                if (value != null) {
+                    check(value);
+                }
+            }
+            final Set<Object> set = new HashSet<>(Arrays.asList(values));
+            return matches(set::contains);
+        }
+
+        public PathPredicate<T> gt(final @Nonnull Comparable<?> value) {
+            return matches(new Compare(check(value), 1, 1));
+        }
+
+        public PathPredicate<T> ge(final @Nonnull Comparable<?> value) {
+            return matches(new Compare(check(value), 0, 1));
+        }
+
+        public PathPredicate<T> lt(final @Nonnull Comparable<?> value) {
+            return matches(new Compare(check(value), -1, -1));
+        }
+
+        public PathPredicate<T> le(final @Nonnull Comparable<?> value) {
+            return matches(new Compare(check(value), -1, 0));
+        }
+
+        public PathPredicate<T> matches(final @Nonnull Predicate<Object> valuePredicate) {
+            if (!accessor.isMultiValued()) {
+                return new PathPredicate<>(type, new SingleValue(accessor, valuePredicate));
+            }
+            return new PathPredicate<>(type, all
+                    ? new Not(new AnyValue(accessor, valuePredicate.negate()))
+                    : new AnyValue(accessor, valuePredicate));
+        }
+
+        /**
+         * A value of another type never matches, e.g. {@code 1L} is never equal to an {@code int} value.
+         */
+        private <V> V check(final V value) {
+            if (!primitiveToWrapper(accessor.getValueType()).isInstance(value)) {
+                throw new IllegalArgumentException(value.getClass().getName() + " can't be compared with "
+                        + accessor.getValueType().getName() + " (path " + accessor.getPath() + ")");
+            }
+            return value;
+        }
+    }
+
+    private static final class SingleValue implements Predicate<Object> {
+        private final PathAccessor accessor;
+        private final Predicate<Object> valuePredicate;
+
+        SingleValue(final PathAccessor accessor, final Predicate<Object> valuePredicate) {
+            this.accessor = accessor;
+            this.valuePredicate = valuePredicate;
+        }
+
+        @Override
+        public boolean test(final Object obj) {
+            return valuePredicate.test(accessor.get(obj));
+        }
+    }
+
+    private static final class AnyValue implements Predicate<Object> {
+        private final PathAccessor accessor;
+        private final Predicate<Object> valuePredicate;
+
+        AnyValue(final PathAccessor accessor, final Predicate<Object> valuePredicate) {
+            this.accessor = accessor;
+            this.valuePredicate = valuePredicate;
+        }
+
+        @Override
+        public boolean test(final Object obj) {
+            return accessor.anyMatch(obj, valuePredicate);
+        }
+    }
+
+    private static final class Eq implements Predicate<Object> {
+        private final Object value;
+
+        Eq(final Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(final Object obj) {
+            return value.equals(obj);
+        }
+    }
+
+    /**
+     * Matches non-null values whose {@code compareTo} sign is between min and max.
+     */
+    private static final class Compare implements Predicate<Object> {
+        private final Comparable<Object> value;
+        private final int min;
+        private final int max;
+
+        @SuppressWarnings("unchecked")
+        Compare(final Comparable<?> value, final int min, final int max) {
+            this.value = (Comparable<Object>) value;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public boolean test(final Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            final int sign = -Integer.signum(value.compareTo(obj));
+            return sign >= min && sign <= max;
+        }
+    }
+
+    private static final class Not implements Predicate<Object> {
+        private final Predicate<Object> predicate;
+
+        Not(final Predicate<Object> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean test(final Object obj) {
+            return !predicate.test(obj);
+        }
+    }
+
+    private abstract static class Junction implements Predicate<Object> {
+        final Predicate<Object>[] predicates;
+
+        Junction(final Predicate<Object>[] predicates) {
+            this.predicates = predicates;
+        }
+    }
+
+    private static final class And extends Junction {
+        And(final Predicate<Object>[] predicates) {
+            super(predicates);
+        }
+
+        @Override
+        public boolean test(final Object obj) {
+            for (final Predicate<Object> predicate : predicates) {
+                if (!predicate.test(obj)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Or extends Junction {
+        Or(final Predicate<Object>[] predicates) {
+            super(predicates);
+        }
+
+        @Override
+        public boolean test(final Object obj) {
+            for (final Predicate<Object> predicate : predicates) {
+                if (predicate.test(obj)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
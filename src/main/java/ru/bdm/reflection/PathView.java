@@ -0,0 +1,409 @@
+package ru.bdm.reflection;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.commons.lang3.ClassUtils.primitiveToWrapper;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.D2F;
+import static org.objectweb.asm.Opcodes.DALOAD;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.I2B;
+import static org.objectweb.asm.Opcodes.I2C;
+import static org.objectweb.asm.Opcodes.I2S;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.L2I;
+import static org.objectweb.asm.Opcodes.LALOAD;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_6;
+import static org.objectweb.asm.Type.getInternalName;
+import static org.objectweb.asm.Type.getMethodDescriptor;
+import static ru.bdm.reflection.Util.propagate;
+
+/**
+ * Copies the values of some paths of an object into a compact implementation of a view interface, so the object
+ * graph can be dropped. The implementation is generated once per view interface: it has a field of the return type
+ * per getter, so a view costs a single object besides the values it references.
+ * <p>
+ * A getter of the view reads the path with the name of its property, unless another path is mapped to the property.
+ * A multi-valued path is copied to an unmodifiable list, a {@code null} value of a primitive getter is 0 or false.
+ */
+public final class PathView<S, V> {
+
+    private static final ConcurrentHashMap<Key, PathView<?, ?>> CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Class<?>, Layout> LAYOUTS = new ConcurrentHashMap<>();
+
+    private static final String KEY_FIELD = "view$key";
+    private static final String OBJECT_FIELD_PREFIX = "object";
+    private static final String LONG_FIELD_PREFIX = "long";
+    private static final String DOUBLE_FIELD_PREFIX = "double";
+
+    private final Class<S> sourceType;
+    private final Class<V> viewType;
+    private final Layout layout;
+    private final PathAccessor[] objectPaths;
+    private final PathAccessor[] longPaths;
+    private final PathAccessor[] doublePaths;
+
+    private PathView(final Class<S> sourceType, final Class<V> viewType, final Map<String, String> paths) {
+        this.sourceType = sourceType;
+        this.viewType = viewType;
+        this.layout = LAYOUTS.computeIfAbsent(viewType, Layout::new);
+        this.objectPaths = compilePaths(layout.objectGetters, paths);
+        this.longPaths = compilePaths(layout.longGetters, paths);
+        this.doublePaths = compilePaths(layout.doubleGetters, paths);
+    }
+
+    public static <S, V> PathView<S, V> compile(final @Nonnull Class<S> sourceType, final @Nonnull Class<V> viewType) {
+        return compile(sourceType, viewType, Collections.emptyMap());
+    }
+
+    /**
+     * @param paths paths by the names of the properties of the view, properties not in the map are read by their names
+     * @throws IllegalArgumentException if the view is not an interface of getters or a path doesn't match the type
+     *                                  of its getter
+     */
+    @SuppressWarnings("unchecked")
+    public static <S, V> PathView<S, V> compile(
+            final @Nonnull Class<S> sourceType,
+            final @Nonnull Class<V> viewType,
+            final @Nonnull Map<String, String> paths
+    ) {
+        return (PathView<S, V>) CACHE.computeIfAbsent(
+                new Key(requireNonNull(sourceType), requireNonNull(viewType), new LinkedHashMap<>(paths)),
+                key -> new PathView<>(key.sourceType, key.viewType, key.paths)
+        );
+    }
+
+    public Class<S> getSourceType() {
+        return sourceType;
+    }
+
+    public Class<V> getViewType() {
+        return viewType;
+    }
+
+    public V create(final @Nonnull S source) {
+        final Object[] objects = objectPaths.length == 0 ? null : new Object[objectPaths.length];
+        for (int i = 0; i < objectPaths.length; i++) {
+            final PathAccessor accessor = objectPaths[i];
+            objects[i] = accessor.isMultiValued()
+                    ? compactCopy(accessor.getAll(source))
+                    : accessor.get(source);
+        }
+        final long[] longs = longPaths.length == 0 ? null : new long[longPaths.length];
+        for (int i = 0; i < longPaths.length; i++) {
+            longs[i] = toLong(longPaths[i].get(source));
+        }
+        final double[] doubles = doublePaths.length == 0 ? null : new double[doublePaths.length];
+        for (int i = 0; i < doublePaths.length; i++) {
+            final Object value = doublePaths[i].get(source);
+            doubles[i] = value == null ? 0 : ((Number) value).doubleValue();
+        }
+        try {
+            return viewType.cast(layout.constructor.newInstance(objects, longs, doubles));
+        } catch (final Exception e) {
+            throw propagate(e);
+        }
+    }
+
+    public List<V> createAll(final @Nonnull Collection<? extends S> sources) {
+        final List<V> result = new ArrayList<>(sources.size());
+        for (final S source : sources) {
+            result.add(create(source));
+        }
+        return result;
+    }
+
+    private PathAccessor[] compilePaths(final Method[] getters, final Map<String, String> paths) {
+        final PathAccessor[] result = new PathAccessor[getters.length];
+        for (int i = 0; i < getters.length; i++) {
+            final Method getter = getters[i];
+            final String property = getPropertyName(getter);
+            final PathAccessor accessor = PathAccessor.compile(sourceType, paths.getOrDefault(property, property));
+            final Class<?> returnType = getter.getReturnType();
+            final boolean matches = accessor.isMultiValued()
+                    ? returnType.isAssignableFrom(List.class)
+                    : returnType.isPrimitive()
+                    ? primitiveToWrapper(accessor.getValueType()) == primitiveToWrapper(returnType)
+                    : returnType.isAssignableFrom(primitiveToWrapper(accessor.getValueType()));
+            if (!matches) {
+                throw new IllegalArgumentException("path " + accessor + " doesn't match getter " + getter);
+            }
+            result[i] = accessor;
+        }
+        return result;
+    }
+
+    /**
+     * @return bean property name of the getter or the name of the method for a record-style getter like {@code issue()}
+     */
+    private static String getPropertyName(final Method getter) {
+        final String methodName = getter.getName();
+        final String name = Util.getPropertyName(getter);
+        return name != null && name.length() < methodName.length()
+                && Character.isUpperCase(methodName.charAt(methodName.length() - name.length()))
+                ? name
+                : methodName;
+    }
+
+    /**
+     * @return unmodifiable list without the spare capacity of the list
+     */
+    private static List<Object> compactCopy(final List<Object> list) {
+        switch (list.size()) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return Collections.singletonList(list.get(0));
+            default:
+                return Collections.unmodifiableList(Arrays.asList(list.toArray()));
+        }
+    }
+
+    private static long toLong(final Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof Character) {
+            return (Character) value;
+        }
+        return ((Number) value).longValue();
+    }
+
+    @Override
+    public String toString() {
+        return sourceType.getName() + " as " + viewType.getName();
+    }
+
+    /**
+     * Getters of a view interface by the arrays passing their values to the constructor, and the generated
+     * implementation.
+     */
+    private static final class Layout {
+        final Method[] objectGetters;
+        final Method[] longGetters;
+        final Method[] doubleGetters;
+        final Constructor<?> constructor;
+
+        Layout(final Class<?> viewType) {
+            if (!viewType.isInterface()) {
+                throw new IllegalArgumentException(viewType.getName() + " is not an interface");
+            }
+            final List<Method> objects = new ArrayList<>();
+            final List<Method> longs = new ArrayList<>();
+            final List<Method> doubles = new ArrayList<>();
+            final Method[] methods = viewType.getMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName).thenComparing((Method method) -> getMethodDescriptor(method)));
+            for (final Method method : methods) {
+                if (!Modifier.isAbstract(method.getModifiers())) {
+                    continue;
+                }
+                final Class<?> returnType = method.getReturnType();
+                if (method.getParameterTypes().length != 0 || returnType == void.class) {
+                    throw new IllegalArgumentException("method " + method + " of the view is not a getter");
+                }
+                if (returnType == double.class || returnType == float.class) {
+                    doubles.add(method);
+                } else if (returnType.isPrimitive()) {
+                    longs.add(method);
+                } else {
+                    objects.add(method);
+                }
+            }
+            this.objectGetters = objects.toArray(new Method[0]);
+            this.longGetters = longs.toArray(new Method[0]);
+            this.doubleGetters = doubles.toArray(new Method[0]);
+
+            final String key = describe();
+            final ClassLoader classLoader = viewType.getClassLoader() == null
+                    ? PathView.class.getClassLoader()
+                    : viewType.getClassLoader();
+            final Class<?> viewClass = GeneratedClasses.findOrDefine(
+                    GeneratedClasses.getClassName(viewType, "$$PathView"),
+                    classLoader,
+                    clazz -> key.equals(getKey(clazz)),
+                    name -> Events.generate("PathView", name, key, () -> generateBytes(name, key, viewType))
+            );
+            try {
+                this.constructor = viewClass.getConstructor(Object[].class, long[].class, double[].class);
+            } catch (final NoSuchMethodException e) {
+                throw propagate(e);
+            }
+        }
+
+        private String describe() {
+            final StringBuilder result = new StringBuilder();
+            for (final Method[] getters : new Method[][]{objectGetters, longGetters, doubleGetters}) {
+                for (final Method getter : getters) {
+                    result.append(getter.getName()).append(getMethodDescriptor(getter)).append(',');
+                }
+                result.append(';');
+            }
+            return result.toString();
+        }
+
+        private static Object getKey(final Class<?> clazz) {
+            try {
+                return clazz.getField(KEY_FIELD).get(null);
+            } catch (final NoSuchFieldException e) {
+                return null;
+            } catch (final IllegalAccessException e) {
+                throw propagate(e);
+            }
+        }
+
+        /**
+         * The constructor copies the values from the arrays passed by {@link #create(Object)} into the fields.
+         */
+        private byte[] generateBytes(final String className, final String key, final Class<?> viewType) {
+            final String internalName = className.replace('.', '/');
+            final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(
+                    V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, internalName, null, "java/lang/Object",
+                    new String[]{getInternalName(viewType)}
+            );
+            cw.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, KEY_FIELD, "Ljava/lang/String;", null, key).visitEnd();
+
+            final MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;[J[D)V", null, null);
+            init.visitCode();
+            init.visitVarInsn(ALOAD, 0);
+            init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+            for (int i = 0; i < objectGetters.length; i++) {
+                final Class<?> returnType = objectGetters[i].getReturnType();
+                startField(cw, init, OBJECT_FIELD_PREFIX + i, returnType, 1, i);
+                init.visitInsn(AALOAD);
+                if (returnType != Object.class) {
+                    init.visitTypeInsn(CHECKCAST, getInternalName(returnType));
+                }
+                endField(cw, init, internalName, objectGetters[i], OBJECT_FIELD_PREFIX + i);
+            }
+            for (int i = 0; i < longGetters.length; i++) {
+                final Class<?> returnType = longGetters[i].getReturnType();
+                startField(cw, init, LONG_FIELD_PREFIX + i, returnType, 2, i);
+                init.visitInsn(LALOAD);
+                if (returnType != long.class) {
+                    init.visitInsn(L2I);
+                    if (returnType == byte.class) {
+                        init.visitInsn(I2B);
+                    } else if (returnType == short.class) {
+                        init.visitInsn(I2S);
+                    } else if (returnType == char.class) {
+                        init.visitInsn(I2C);
+                    }
+                }
+                endField(cw, init, internalName, longGetters[i], LONG_FIELD_PREFIX + i);
+            }
+            for (int i = 0; i < doubleGetters.length; i++) {
+                startField(cw, init, DOUBLE_FIELD_PREFIX + i, doubleGetters[i].getReturnType(), 3, i);
+                init.visitInsn(DALOAD);
+                if (doubleGetters[i].getReturnType() == float.class) {
+                    init.visitInsn(D2F);
+                }
+                endField(cw, init, internalName, doubleGetters[i], DOUBLE_FIELD_PREFIX + i);
+            }
+            init.visitInsn(RETURN);
+            init.visitMaxs(0, 0);
+            init.visitEnd();
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        /**
+         * Declares the field and loads {@code this} and the value from the array argument of the constructor.
+         */
+        private static void startField(
+                final ClassWriter cw,
+                final MethodVisitor init,
+                final String field,
+                final Class<?> type,
+                final int array,
+                final int index
+        ) {
+            cw.visitField(ACC_PRIVATE | ACC_FINAL, field, Type.getDescriptor(type), null, null).visitEnd();
+            init.visitVarInsn(ALOAD, 0);
+            init.visitVarInsn(ALOAD, array);
+            init.visitLdcInsn(index);
+        }
+
+        /**
+         * Stores the value in the field and generates the getter returning it.
+         */
+        private static void endField(
+                final ClassWriter cw,
+                final MethodVisitor init,
+                final String internalName,
+                final Method getter,
+                final String field
+        ) {
+            final String descriptor = Type.getDescriptor(getter.getReturnType());
+            init.visitFieldInsn(PUTFIELD, internalName, field, descriptor);
+            final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, getter.getName(), getMethodDescriptor(getter), null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, internalName, field, descriptor);
+            mv.visitInsn(Type.getType(getter.getReturnType()).getOpcode(IRETURN));
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+    }
+
+    private static final class Key {
+        final Class<?> sourceType;
+        final Class<?> viewType;
+        final Map<String, String> paths;
+
+        Key(final Class<?> sourceType, final Class<?> viewType, final Map<String, String> paths) {
+            this.sourceType = sourceType;
+            this.viewType = viewType;
+            this.paths = paths;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return sourceType == that.sourceType && viewType == that.viewType && paths.equals(that.paths);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sourceType, viewType, paths);
+        }
+    }
+}
@@ -1,23 +1,42 @@
 package ru.bdm.reflection;
 
-import net.sf.cglib.core.Signature;
+import net.sf.cglib.core.GeneratorStrategy;
+import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.Factory;
-import net.sf.cglib.proxy.InterfaceMaker;
 import net.sf.cglib.proxy.InvocationHandler;
-import org.objectweb.asm.Type;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
 
 import javax.annotation.Nonnull;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
 
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Collections.unmodifiableSet;
-import static org.objectweb.asm.Type.getType;
+import static java.util.Objects.requireNonNull;
+import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
+import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ASM4;
+import static org.objectweb.asm.Opcodes.V1_6;
+import static org.objectweb.asm.Type.getDescriptor;
 import static ru.bdm.reflection.Util.getGetterName;
 import static ru.bdm.reflection.Util.getPropertyName;
 import static ru.bdm.reflection.Util.propagate;
@@ -30,73 +49,410 @@ import static ru.bdm.reflection.Util.upperFirst;
  */
 public class PropertyJoiner {
 
-    private static final Type OBJECT_TYPE = getType(Object.class);
-    private static final Type[] EMPTY_TYPES = new Type[]{};
     private static final ConcurrentHashMap<String, Class> PROPERTY_HOLDER_INTERFACE_CACHE = new ConcurrentHashMap<>();
 
-    private static final ConcurrentHashMap<ProxyClassKey, Class> PROXY_CLASSES_CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<ProxyClassKey, Instantiator<?>> PROXY_CLASSES_CACHE = new ConcurrentHashMap<>();
+    private static final int MAP_JOINERS_CACHE_SIZE = 1024;
+    private static final int MERGED_CACHE_SIZE = 16;
+    private static final ConcurrentHashMap<Set<String>, PropertyJoiner> MAP_JOINERS_CACHE = new ConcurrentHashMap<>();
+    private static volatile PropertyJoiner lastMapJoiner;
+    private final Mode mode;
     private final PropertyExtractor extractor;
     private final Set<String> properties;
+    private final Map<String, Class<?>> propertyTypes;
+    private final Map<String, NestedJoin> nestedJoins;
+    private final Set<String> interceptedProperties;
+    private final String[] sortedTopLevelProperties;
+    private final Class<?>[] sortedTopLevelPropertyTypes;
+    private final String[] sortedNestedProperties;
+    private final boolean primitiveProperties;
+    private final PropertyExtractor boundExtractor;
+    private final int propertiesHash;
+    private volatile ProxyClass lastProxyClass;
+    /**
+     * joiners merged with the joiners of already joined objects, by the previous joiner; this joiner itself
+     * if the properties conflict
+     */
+    private final ConcurrentHashMap<PropertyJoiner, PropertyJoiner> mergedJoiners = new ConcurrentHashMap<>();
 
     public PropertyJoiner(final @Nonnull PropertyExtractor extractor, final @Nonnull String... properties) {
-        this.extractor = extractor;
-        this.properties = unmodifiableSet(new HashSet<>(Arrays.asList(properties)));
+        this(Mode.INVOCATION_HANDLER, extractor, properties);
     }
 
     public PropertyJoiner(final @Nonnull PropertyExtractor extractor, final @Nonnull Collection<String> properties) {
-        this(extractor, properties.toArray(new String[]{}));
+        this(Mode.INVOCATION_HANDLER, extractor, properties);
+    }
+
+    public PropertyJoiner(
+            final @Nonnull Mode mode,
+            final @Nonnull PropertyExtractor extractor,
+            final @Nonnull String... properties
+    ) {
+        this(mode, extractor, Arrays.stream(properties).map(JoinedProperty::property).toArray(JoinedProperty[]::new));
+    }
+
+    /**
+     * Joined getters are declared with the types of the properties. In {@link Mode#DELEGATE} mode values of
+     * {@code int}, {@code long}, {@code double} and {@code boolean} properties are taken without boxing
+     * if the extractor implements {@link IntPropertyExtractor} and others, otherwise they are unboxed.
+     */
+    public PropertyJoiner(
+            final @Nonnull Mode mode,
+            final @Nonnull PropertyExtractor extractor,
+            final @Nonnull JoinedProperty... properties
+    ) {
+        this.mode = mode;
+        this.extractor = extractor;
+        final Map<String, Class<?>> types = new HashMap<>();
+        for (final JoinedProperty property : properties) {
+            types.put(property.name, property.type);
+        }
+        this.propertyTypes = unmodifiableMap(types);
+        this.properties = unmodifiableSet(types.keySet());
+
+        final Map<String, Class<?>> topLevel = new HashMap<>();
+        final Map<String, List<JoinedProperty>> nestedPaths = new LinkedHashMap<>();
+        for (final Map.Entry<String, Class<?>> property : types.entrySet()) {
+            final String name = property.getKey();
+            final int dot = name.indexOf('.');
+            if (dot < 0) {
+                topLevel.put(name, property.getValue());
+            } else {
+                nestedPaths.computeIfAbsent(name.substring(0, dot), k -> new ArrayList<>())
+                        .add(JoinedProperty.property(name.substring(dot + 1), property.getValue()));
+            }
+        }
+        final Map<String, NestedJoin> nested = new HashMap<>();
+        for (final Map.Entry<String, List<JoinedProperty>> entry : nestedPaths.entrySet()) {
+            if (topLevel.containsKey(entry.getKey())) {
+                throw new IllegalArgumentException("property " + entry.getKey() + " is joined and has joined properties");
+            }
+            nested.put(entry.getKey(), new NestedJoin(nested.size(), entry.getKey(), mode, entry.getValue()));
+        }
+        final Set<String> intercepted = new HashSet<>(topLevel.keySet());
+        intercepted.addAll(nested.keySet());
+        this.nestedJoins = nested;
+        this.interceptedProperties = unmodifiableSet(intercepted);
+        this.sortedTopLevelProperties = topLevel.keySet().stream().sorted().toArray(String[]::new);
+        this.sortedTopLevelPropertyTypes = Arrays.stream(sortedTopLevelProperties).map(topLevel::get).toArray(Class<?>[]::new);
+        this.sortedNestedProperties = nested.keySet().stream().sorted().toArray(String[]::new);
+        this.primitiveProperties = topLevel.values().stream().anyMatch(Class::isPrimitive);
+        this.boundExtractor = nested.isEmpty() ? bindPrimitive(extractor) : null;
+        this.propertiesHash = ProxyClassKey.hash(
+                sortedTopLevelProperties, sortedTopLevelPropertyTypes, sortedNestedProperties, mode
+        );
+    }
+
+    public PropertyJoiner(
+            final @Nonnull Mode mode,
+            final @Nonnull PropertyExtractor extractor,
+            final @Nonnull Collection<String> properties
+    ) {
+        this(mode, extractor, properties.toArray(new String[]{}));
     }
 
     public static <T> T joinProperties(final @Nonnull T t, final @Nonnull Map<String, ?> map) {
-        return new PropertyJoiner((o, property) -> map.get(property), map.keySet()).joinProperties(t);
+        return getMapJoiner(map.keySet()).joinProperties(t, (o, property) -> map.get(property));
+    }
+
+    /**
+     * Rows joined with maps usually share the key set: the last joiner is checked first without hashing the keys.
+     */
+    private static PropertyJoiner getMapJoiner(final Set<String> keys) {
+        final PropertyJoiner last = lastMapJoiner;
+        if (last != null && last.properties.equals(keys)) {
+            return last;
+        }
+        PropertyJoiner joiner = MAP_JOINERS_CACHE.get(keys);
+        if (joiner == null) {
+            if (MAP_JOINERS_CACHE.size() >= MAP_JOINERS_CACHE_SIZE) {
+                MAP_JOINERS_CACHE.clear();
+            }
+            final PropertyJoiner created = new PropertyJoiner((o, property) -> {
+                throw new IllegalStateException("property " + property + " is joined without a map");
+            }, keys);
+            joiner = defaultIfNull(MAP_JOINERS_CACHE.putIfAbsent(created.properties, created), created);
+        }
+        lastMapJoiner = joiner;
+        return joiner;
+    }
+
+    private static Instantiator<?> createProxyClass(final ProxyClassKey classHolderTypesKey) {
+        final Class[] holderInterfaces = getPropertyHolderInterfaces(
+                classHolderTypesKey.mixedPropertyNames,
+                classHolderTypesKey.mixedPropertyTypes
+        );
+        if (classHolderTypesKey.mode == Mode.DELEGATE) {
+            return Instantiator.of(DelegateProxyGenerator.generate(
+                    classHolderTypesKey.getClassName(),
+                    classHolderTypesKey.describe(),
+                    classHolderTypesKey.clazz,
+                    holderInterfaces,
+                    classHolderTypesKey.getJoinedProperties(),
+                    PropertyJoiner.class.getClassLoader()
+            ));
+        }
+        return Instantiator.of(
+                createProxyEnhancer(classHolderTypesKey, holderInterfaces, PropertyJoiner.class.getClassLoader()).createClass()
+        );
     }
 
-    private static Class createProxyClass(final ProxyClassKey classHolderTypesKey) {
-        final Enhancer enhancer = new Enhancer();
-        enhancer.setClassLoader(PropertyJoiner.class.getClassLoader());
-        enhancer.setInterfaces(getPropertyHolderInterfaces(classHolderTypesKey.mixedPropertyNames));
+    /**
+     * A class loaded by the name is used only if its key constant is the key of the proxy, otherwise another name
+     * is taken, as {@link GeneratedClasses#findOrDefine} does.
+     */
+    private static Enhancer createProxyEnhancer(
+            final ProxyClassKey classHolderTypesKey,
+            final Class[] holderInterfaces,
+            final ClassLoader classLoader
+    ) {
+        final String key = classHolderTypesKey.describe();
+        final Enhancer enhancer = new KeyedEnhancer(key);
+        enhancer.setClassLoader(classLoader);
+        enhancer.setNamingPolicy(GeneratedClasses.namingPolicy(
+                classHolderTypesKey.getClassName(),
+                classLoader,
+                clazz -> key.equals(DelegateProxyGenerator.getKey(clazz))
+        ));
+        enhancer.setAttemptLoad(true);
+        enhancer.setStrategy(Events.generatorStrategy("PropertyJoiner", classHolderTypesKey.describe()));
+        enhancer.setInterfaces(holderInterfaces);
         enhancer.setSuperclass(classHolderTypesKey.clazz);
         enhancer.setCallbackType(InvocationHandler.class);
         enhancer.setCallbackFilter(method -> 0);
-        return enhancer.createClass();
+        return enhancer;
     }
 
-    private static Class[] getPropertyHolderInterfaces(final Set<String> properties) {
-        final Class[] result = new Class[properties.size()];
-        int i = 0;
-        for (final String property : properties) {
-            result[i++] = PROPERTY_HOLDER_INTERFACE_CACHE.computeIfAbsent(property, PropertyJoiner::createPropertyHolderInterface);
+    private static Class[] getPropertyHolderInterfaces(final String[] properties, final Class<?>[] types) {
+        final Class[] result = new Class[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            final String property = properties[i];
+            final Class<?> type = types[i];
+            result[i] = PROPERTY_HOLDER_INTERFACE_CACHE.computeIfAbsent(
+                    getPropertyHolderInterfaceName(property, type),
+                    name -> GeneratedClasses.findOrDefine(
+                            name,
+                            PropertyJoiner.class.getClassLoader(),
+                            clazz -> isPropertyHolderInterface(clazz, property, type),
+                            className -> Events.generate("PropertyJoiner", className, name, () ->
+                                    generatePropertyHolderInterface(className, property, type)
+                            )
+                    )
+            );
         }
         return result;
     }
 
-    private static Class<?> createPropertyHolderInterface(final String propertyName) {
-        Signature signature = new Signature(getGetterName(propertyName, Object.class), OBJECT_TYPE, EMPTY_TYPES);
-        InterfaceMaker interfaceMaker = new InterfaceMaker();
-        interfaceMaker.add(signature, new Type[0]);
-        interfaceMaker.setNamingPolicy((prefix, source, key, names) -> upperFirst(propertyName + "Holder"));
-        return interfaceMaker.create();
+    private static String getPropertyHolderInterfaceName(final String propertyName, final Class<?> type) {
+        return type == Object.class
+                ? upperFirst(propertyName + "Holder")
+                : upperFirst(propertyName) + "Holder$$" + getTypeSuffix(type);
     }
 
-    public <T> T joinProperties(final @Nonnull T t) {
+    /**
+     * @return name of the type usable in a class name, arrays are named by their descriptors
+     */
+    private static String getTypeSuffix(final Class<?> type) {
+        return type.isArray()
+                ? getDescriptor(type).replace("[", "Array$").replace('/', '_').replace(";", "")
+                : type.getName().replace('.', '_');
+    }
+
+    private static boolean isPropertyHolderInterface(final Class<?> clazz, final String propertyName, final Class<?> type) {
         try {
-            final Class<?> clazz = t instanceof Factory ? t.getClass().getSuperclass() : t.getClass();
+            return clazz.isInterface() && clazz.getMethod(getGetterName(propertyName, type)).getReturnType() == type;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static byte[] generatePropertyHolderInterface(final String className, final String propertyName, final Class<?> type) {
+        final ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, className.replace('.', '/'), null, "java/lang/Object", null);
+        cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, getGetterName(propertyName, type), "()" + getDescriptor(type), null, null)
+                .visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Passes the bytecode of the proxy class for the entity class and of its holder interfaces to the consumer,
+     * cglib classes are generated with the given strategy in the given class loader.
+     *
+     * @see ProxyPregenerator
+     */
+    void pregenerate(
+            final Class<?> clazz,
+            final GeneratorStrategy strategy,
+            final ClassLoader classLoader,
+            final BiConsumer<String, byte[]> classes
+    ) {
+        final ProxyClassKey key = new ProxyClassKey(
+                clazz,
+                sortedTopLevelProperties,
+                sortedTopLevelPropertyTypes,
+                sortedNestedProperties,
+                mode,
+                propertiesHash
+        );
+        final Class[] holderInterfaces = getPropertyHolderInterfaces(key.mixedPropertyNames, key.mixedPropertyTypes);
+        for (int i = 0; i < holderInterfaces.length; i++) {
+            classes.accept(holderInterfaces[i].getName(), generatePropertyHolderInterface(
+                    holderInterfaces[i].getName(), key.mixedPropertyNames[i], key.mixedPropertyTypes[i]
+            ));
+        }
+        if (mode == Mode.DELEGATE) {
+            classes.accept(key.getClassName(), DelegateProxyGenerator.generateBytes(
+                    key.getClassName(),
+                    key.describe(),
+                    clazz,
+                    holderInterfaces,
+                    key.getJoinedProperties(),
+                    PropertyJoiner.class.getClassLoader()
+            ));
+            return;
+        }
+        final Enhancer enhancer = createProxyEnhancer(key, holderInterfaces, classLoader);
+        enhancer.setStrategy(strategy);
+        enhancer.setAttemptLoad(false);
+        enhancer.setUseCache(false);
+        enhancer.createClass();
+    }
+
+    PropertyExtractor getExtractor() {
+        return extractor;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return joined properties, a property of an object returned by a getter is joined by its path
+     * ({@code owner.fullName}): such objects are wrapped on the first call of the getter
+     */
+    public Set<String> getProperties() {
+        return properties;
+    }
+
+    public <T> T joinProperties(final @Nonnull T t) {
+        return joinProperties(t, extractor);
+    }
+
+    /**
+     * @return new flyweight of the class; flyweights are not cached by the joiner, keep one per loop or per thread
+     */
+    public <T> Flyweight<T> newFlyweight(final @Nonnull Class<T> type) {
+        return new Flyweight<>(requireNonNull(type));
+    }
+
+    public <T> List<T> joinAll(final @Nonnull List<? extends T> list) {
+        return joinAll(list, false);
+    }
+
+    /**
+     * Joins the elements of the list lazily: an element is joined when it is read from the returned read-only view,
+     * so proxies are created only for the elements that are read. The view reflects the list if it is
+     * {@link java.util.RandomAccess}, other lists are copied.
+     *
+     * @param cache keep the proxies in the view, so an element is joined once while it stays at its index
+     */
+    public <T> List<T> joinAll(final @Nonnull List<? extends T> list, final boolean cache) {
+        return new JoinedList<T>(requireNonNull(list), this::joinProperties, cache);
+    }
+
+    /**
+     * Same as {@link #joinProperties(Object)}, but joined values are taken from the given extractor
+     * instead of the one of this joiner.
+     */
+    <T> T joinProperties(final T t, final PropertyExtractor extractor) {
+        final Joined joined = Joined.of(t);
+        if (joined == null) {
+            return bind(t, extractor);
+        }
+        // t is joined already: join the original object once with the properties of both joiners,
+        // the extractor still gets t, so it can read the properties joined before
+        final PropertyJoiner merged = getMerged(joined.joiner);
+        if (merged == this) {
+            // a property of one joiner has properties joined by the other, the proxies are stacked
+            return bind(t, extractor);
+        }
+        final @SuppressWarnings("unchecked") T target = (T) joined.target;
+        return merged.bind(target, new StagedExtractor(joined.extractor, properties, extractor, t));
+    }
 
-            final Class<?> proxyClass = PROXY_CLASSES_CACHE.computeIfAbsent(
-                    new ProxyClassKey(clazz, properties),
-                    PropertyJoiner::createProxyClass
+    /**
+     * @return joiner with the properties of both joiners or this joiner if they can't be merged
+     */
+    private PropertyJoiner getMerged(final PropertyJoiner previous) {
+        PropertyJoiner result = mergedJoiners.get(previous);
+        if (result != null) {
+            return result;
+        }
+        if (hasNestedPropertiesOf(previous) || previous.hasNestedPropertiesOf(this)) {
+            result = this;
+        } else {
+            final Map<String, Class<?>> mergedProperties = new HashMap<>(previous.propertyTypes);
+            mergedProperties.putAll(propertyTypes);
+            result = new PropertyJoiner(
+                    mode,
+                    (obj, property) -> {
+                        throw new IllegalStateException("merged property " + property + " is joined by its joiner");
+                    },
+                    mergedProperties.entrySet().stream()
+                            .map(property -> JoinedProperty.property(property.getKey(), property.getValue()))
+                            .toArray(JoinedProperty[]::new)
             );
+        }
+        if (mergedJoiners.size() >= MERGED_CACHE_SIZE) {
+            mergedJoiners.clear();
+        }
+        mergedJoiners.put(previous, result);
+        return result;
+    }
 
-            final @SuppressWarnings("unchecked") T result = (T) proxyClass.newInstance();
+    /**
+     * @return true if this joiner joins properties to a property joined by the other joiner
+     */
+    private boolean hasNestedPropertiesOf(final PropertyJoiner other) {
+        for (final String nested : nestedJoins.keySet()) {
+            if (other.propertyTypes.containsKey(nested)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            ((Factory) result).setCallback(0, (InvocationHandler) (proxy, method, args) -> {
-                final String propertyName = getPropertyName(method);
-                if (properties.contains(propertyName)) {
-                    return extractor.get(t, propertyName);
-                } else {
-                    return method.invoke(t, args);
-                }
-            });
+    private PropertyExtractor bindPrimitive(final PropertyExtractor extractor) {
+        return primitiveProperties && !(extractor instanceof PrimitivePropertyExtractor)
+                ? new PrimitivePropertyExtractor(extractor)
+                : extractor;
+    }
+
+    private <T> T bind(final T t, final PropertyExtractor extractor) {
+        final PropertyExtractor bound = extractor == this.extractor && this.boundExtractor != null
+                ? this.boundExtractor
+                : bindPrimitive(nestedJoins.isEmpty() ? extractor : new NestingExtractor(extractor));
+        // proxies joined while the event is recorded report slow extraction, the others call the extractor directly
+        final PropertyExtractor boundExtractor = Events.isPropertyExtractionEnabled()
+                ? new RecordingExtractor(bound, extractor)
+                : bound;
+        try {
+            final Class<?> clazz = t instanceof Factory || t instanceof DelegateProxy
+                    ? t.getClass().getSuperclass()
+                    : t.getClass();
+
+            final Instantiator<?> proxyInstantiator = getProxyInstantiator(clazz);
+
+            // constructors are not run: the proxy state is never used, all calls are delegated to t
+            final @SuppressWarnings("unchecked") T result = (T) proxyInstantiator.newInstance();
+
+            if (mode == Mode.DELEGATE) {
+                ((DelegateProxy) result).joined$bind(t, boundExtractor, this);
+                return result;
+            }
+
+            ((Factory) result).setCallback(0, new JoinedInvocationHandler(this, t, extractor, boundExtractor));
 
             return result;
         } catch (final Exception e) {
@@ -104,17 +460,568 @@ public class PropertyJoiner {
         }
     }
 
+    private Instantiator<?> getProxyInstantiator(final Class<?> clazz) {
+        final ProxyClass last = lastProxyClass;
+        if (last != null && last.clazz == clazz) {
+            return last.instantiator;
+        }
+        for (final NestedJoin nestedJoin : nestedJoins.values()) {
+            nestedJoin.accessors.get(clazz);
+        }
+        final Instantiator<?> instantiator = PROXY_CLASSES_CACHE.computeIfAbsent(
+                new ProxyClassKey(
+                        clazz,
+                        sortedTopLevelProperties,
+                        sortedTopLevelPropertyTypes,
+                        sortedNestedProperties,
+                        mode,
+                        propertiesHash
+                ),
+                PropertyJoiner::createProxyClass
+        );
+        lastProxyClass = new ProxyClass(clazz, instantiator);
+        return instantiator;
+    }
+
+    public enum Mode {
+        /**
+         * cglib subclass, every call goes through a single {@link InvocationHandler}
+         */
+        INVOCATION_HANDLER,
+        /**
+         * generated subclass with a concrete method per method of the entity: joined getters call the extractor,
+         * the rest call the joined object directly, so the call sites stay monomorphic
+         */
+        DELEGATE
+    }
+
     public interface PropertyExtractor {
         Object get(Object obj, String property);
     }
 
+    public interface IntPropertyExtractor extends PropertyExtractor {
+        int getInt(Object obj, String property);
+    }
+
+    public interface LongPropertyExtractor extends PropertyExtractor {
+        long getLong(Object obj, String property);
+    }
+
+    public interface DoublePropertyExtractor extends PropertyExtractor {
+        double getDouble(Object obj, String property);
+    }
+
+    public interface BooleanPropertyExtractor extends PropertyExtractor {
+        boolean getBoolean(Object obj, String property);
+    }
+
+    /**
+     * Name and type of a joined property, the type is the return type of the joined getter.
+     */
+    public static final class JoinedProperty {
+        final String name;
+        final Class<?> type;
+
+        private JoinedProperty(final String name, final Class<?> type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public static JoinedProperty property(final @Nonnull String name) {
+            return new JoinedProperty(requireNonNull(name), Object.class);
+        }
+
+        public static JoinedProperty property(final @Nonnull String name, final @Nonnull Class<?> type) {
+            if (type == void.class) {
+                throw new IllegalArgumentException("property " + name + " can't be void");
+            }
+            return new JoinedProperty(requireNonNull(name), requireNonNull(type));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+    }
+
+    /**
+     * @see StreamingPropertyJoiner
+     */
+    public interface BatchPropertyExtractor {
+        /**
+         * @param objects is reused by the caller, don't keep it
+         * @return values of the properties for every object, in the order of the objects
+         */
+        List<? extends Map<String, ?>> get(List<?> objects, Set<String> properties);
+    }
+
+    /**
+     * @see AsyncPropertyJoiner
+     */
+    public interface AsyncPropertyExtractor {
+        CompletableFuture<?> get(Object obj, String property);
+    }
+
+    /**
+     * Implemented by proxies created in {@link Mode#DELEGATE} mode.
+     */
+    public interface DelegateProxy {
+        void joined$bind(Object target, PropertyExtractor extractor, PropertyJoiner joiner);
+
+        Object joined$target();
+
+        PropertyExtractor joined$extractor();
+
+        PropertyJoiner joined$joiner();
+    }
+
+    /**
+     * Joined proxy reused for many objects: {@link #bind} replaces the object of the proxy and returns the proxy,
+     * so the proxy returned by the previous call must not be used any more. For loops consuming every joined object
+     * before joining the next one, in {@link Mode#DELEGATE} mode binding and calling joined getters allocate nothing
+     * (besides what the extractor allocates). A flyweight must be used by a single thread.
+     */
+    public final class Flyweight<T> {
+        private final Class<T> type;
+        private final T proxy;
+        private final NestingExtractor nesting;
+        private final PropertyExtractor boundExtractor;
+        private final FlyweightInvocationHandler handler;
+
+        private Flyweight(final Class<T> type) {
+            this.type = type;
+            this.nesting = nestedJoins.isEmpty() ? null : new NestingExtractor(extractor);
+            final PropertyExtractor bound = nesting == null ? PropertyJoiner.this.boundExtractor : bindPrimitive(nesting);
+            this.boundExtractor = Events.isPropertyExtractionEnabled() ? new RecordingExtractor(bound, extractor) : bound;
+            this.proxy = type.cast(getProxyInstantiator(type).newInstance());
+            if (mode == Mode.DELEGATE) {
+                this.handler = null;
+            } else {
+                this.handler = new FlyweightInvocationHandler(PropertyJoiner.this, extractor, boundExtractor);
+                ((Factory) proxy).setCallback(0, handler);
+            }
+        }
+
+        public Class<T> getType() {
+            return type;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the class of the object is not the class of the flyweight
+         */
+        public T bind(final @Nonnull T t) {
+            if (t.getClass() != type) {
+                throw new IllegalArgumentException(
+                        "flyweight of " + type.getName() + " can't be bound to " + t.getClass().getName()
+                );
+            }
+            if (nesting != null) {
+                nesting.reset();
+            }
+            if (handler == null) {
+                ((DelegateProxy) proxy).joined$bind(t, boundExtractor, PropertyJoiner.this);
+            } else {
+                handler.current = t;
+            }
+            return proxy;
+        }
+    }
+
+    private static class JoinedInvocationHandler implements InvocationHandler {
+        final PropertyJoiner joiner;
+        private final Object target;
+        final PropertyExtractor extractor;
+        final PropertyExtractor boundExtractor;
+
+        JoinedInvocationHandler(
+                final PropertyJoiner joiner,
+                final Object target,
+                final PropertyExtractor extractor,
+                final PropertyExtractor boundExtractor
+        ) {
+            this.joiner = joiner;
+            this.target = target;
+            this.extractor = extractor;
+            this.boundExtractor = boundExtractor;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            // only getters are joined, setters of joined properties are passed to the target
+            final String propertyName = method.getParameterCount() == 0 && method.getReturnType() != void.class
+                    ? getPropertyName(method)
+                    : null;
+            if (propertyName != null && joiner.interceptedProperties.contains(propertyName)) {
+                return boundExtractor.get(getTarget(), propertyName);
+            } else {
+                return method.invoke(getTarget(), args);
+            }
+        }
+
+        Object getTarget() {
+            return target;
+        }
+    }
+
+    private static final class FlyweightInvocationHandler extends JoinedInvocationHandler {
+        /**
+         * replaced by {@link Flyweight#bind}
+         */
+        Object current;
+
+        FlyweightInvocationHandler(
+                final PropertyJoiner joiner,
+                final PropertyExtractor extractor,
+                final PropertyExtractor boundExtractor
+        ) {
+            super(joiner, null, extractor, boundExtractor);
+        }
+
+        @Override
+        Object getTarget() {
+            return current;
+        }
+    }
+
+    /**
+     * Joiner, joined object and extractor of a proxy created by {@link PropertyJoiner}.
+     */
+    private static final class Joined {
+        final PropertyJoiner joiner;
+        final Object target;
+        final PropertyExtractor extractor;
+
+        private Joined(final PropertyJoiner joiner, final Object target, final PropertyExtractor extractor) {
+            this.joiner = joiner;
+            this.target = target;
+            final PropertyExtractor recorded = extractor instanceof RecordingExtractor
+                    ? ((RecordingExtractor) extractor).extractor
+                    : extractor;
+            final PropertyExtractor unwrapped = recorded instanceof PrimitivePropertyExtractor
+                    ? ((PrimitivePropertyExtractor) recorded).extractor
+                    : recorded;
+            this.extractor = unwrapped instanceof NestingExtractor
+                    ? ((NestingExtractor) unwrapped).extractor
+                    : unwrapped;
+        }
+
+        static Joined of(final Object obj) {
+            if (obj instanceof DelegateProxy) {
+                final DelegateProxy proxy = (DelegateProxy) obj;
+                return new Joined(proxy.joined$joiner(), proxy.joined$target(), proxy.joined$extractor());
+            }
+            if (obj instanceof Factory) {
+                final Callback callback = ((Factory) obj).getCallback(0);
+                if (callback instanceof JoinedInvocationHandler) {
+                    final JoinedInvocationHandler handler = (JoinedInvocationHandler) callback;
+                    return new Joined(handler.joiner, handler.getTarget(), handler.extractor);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Extractor of a proxy joined with the properties of several joiners: properties of the last joiner
+     * are extracted from the object joined by the previous ones, as if the proxies were stacked, the others
+     * are passed to the extractor of the previous joiners.
+     */
+    private static final class StagedExtractor implements PropertyExtractor {
+        private final PropertyExtractor previous;
+        private final Set<String> properties;
+        private final PropertyExtractor extractor;
+        private final Object joined;
+
+        StagedExtractor(
+                final PropertyExtractor previous,
+                final Set<String> properties,
+                final PropertyExtractor extractor,
+                final Object joined
+        ) {
+            this.previous = previous;
+            this.properties = properties;
+            this.extractor = extractor;
+            this.joined = joined;
+        }
+
+        @Override
+        public Object get(final Object obj, final String property) {
+            return properties.contains(property) ? extractor.get(joined, property) : previous.get(obj, property);
+        }
+    }
+
+    /**
+     * Typed access for joined getters of primitive properties: calls the typed method of the extractor
+     * if it has one, otherwise unboxes the value.
+     */
+    private static final class PrimitivePropertyExtractor implements
+            IntPropertyExtractor, LongPropertyExtractor, DoublePropertyExtractor, BooleanPropertyExtractor {
+        private final PropertyExtractor extractor;
+
+        PrimitivePropertyExtractor(final PropertyExtractor extractor) {
+            this.extractor = extractor;
+        }
+
+        @Override
+        public Object get(final Object obj, final String property) {
+            return extractor.get(obj, property);
+        }
+
+        @Override
+        public int getInt(final Object obj, final String property) {
+            if (extractor instanceof IntPropertyExtractor) {
+                return ((IntPropertyExtractor) extractor).getInt(obj, property);
+            }
+            return ((Number) requireValue(obj, property)).intValue();
+        }
+
+        @Override
+        public long getLong(final Object obj, final String property) {
+            if (extractor instanceof LongPropertyExtractor) {
+                return ((LongPropertyExtractor) extractor).getLong(obj, property);
+            }
+            return ((Number) requireValue(obj, property)).longValue();
+        }
+
+        @Override
+        public double getDouble(final Object obj, final String property) {
+            if (extractor instanceof DoublePropertyExtractor) {
+                return ((DoublePropertyExtractor) extractor).getDouble(obj, property);
+            }
+            return ((Number) requireValue(obj, property)).doubleValue();
+        }
+
+        @Override
+        public boolean getBoolean(final Object obj, final String property) {
+            if (extractor instanceof BooleanPropertyExtractor) {
+                return ((BooleanPropertyExtractor) extractor).getBoolean(obj, property);
+            }
+            return (Boolean) requireValue(obj, property);
+        }
+
+        private Object requireValue(final Object obj, final String property) {
+            final Object value = extractor.get(obj, property);
+            if (value == null) {
+                throw new NullPointerException("value of primitive property " + property + " is null");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Records slow calls of the extractor as Flight Recorder events, typed calls are passed to the typed methods.
+     */
+    private static final class RecordingExtractor implements
+            IntPropertyExtractor, LongPropertyExtractor, DoublePropertyExtractor, BooleanPropertyExtractor {
+        private final PropertyExtractor extractor;
+        private final PropertyExtractor reported;
+
+        RecordingExtractor(final PropertyExtractor extractor, final PropertyExtractor reported) {
+            this.extractor = extractor;
+            this.reported = reported;
+        }
+
+        @Override
+        public Object get(final Object obj, final String property) {
+            final Object event = Events.beginPropertyExtraction();
+            final Object value = extractor.get(obj, property);
+            Events.endPropertyExtraction(event, obj, property, reported);
+            return value;
+        }
+
+        @Override
+        public int getInt(final Object obj, final String property) {
+            final Object event = Events.beginPropertyExtraction();
+            final int value = ((IntPropertyExtractor) extractor).getInt(obj, property);
+            Events.endPropertyExtraction(event, obj, property, reported);
+            return value;
+        }
+
+        @Override
+        public long getLong(final Object obj, final String property) {
+            final Object event = Events.beginPropertyExtraction();
+            final long value = ((LongPropertyExtractor) extractor).getLong(obj, property);
+            Events.endPropertyExtraction(event, obj, property, reported);
+            return value;
+        }
+
+        @Override
+        public double getDouble(final Object obj, final String property) {
+            final Object event = Events.beginPropertyExtraction();
+            final double value = ((DoublePropertyExtractor) extractor).getDouble(obj, property);
+            Events.endPropertyExtraction(event, obj, property, reported);
+            return value;
+        }
+
+        @Override
+        public boolean getBoolean(final Object obj, final String property) {
+            final Object event = Events.beginPropertyExtraction();
+            final boolean value = ((BooleanPropertyExtractor) extractor).getBoolean(obj, property);
+            Events.endPropertyExtraction(event, obj, property, reported);
+            return value;
+        }
+    }
+
+    private static final class NestedJoin {
+        final int index;
+        final String property;
+        final PropertyJoiner joiner;
+        final Map<String, String> paths = new HashMap<>();
+        /**
+         * accessors of the property by the class of the owner, resolved when the proxy class is created
+         *
+         * @throws IllegalArgumentException if the property is a collection
+         */
+        final ClassValue<PathAccessor> accessors = new ClassValue<PathAccessor>() {
+            @Override
+            protected PathAccessor computeValue(final Class<?> type) {
+                final PathAccessor accessor = PathAccessor.compile(type, property);
+                if (Collection.class.isAssignableFrom(accessor.getValueType())) {
+                    throw new IllegalArgumentException("can't join properties to items of " + accessor);
+                }
+                return accessor;
+            }
+        };
+
+        NestedJoin(final int index, final String property, final Mode mode, final List<JoinedProperty> properties) {
+            this.index = index;
+            this.property = property;
+            this.joiner = new PropertyJoiner(mode, (obj, p) -> {
+                throw new IllegalStateException("nested property " + p + " is joined by the owner");
+            }, properties.toArray(new JoinedProperty[0]));
+            for (final JoinedProperty nestedProperty : properties) {
+                paths.put(nestedProperty.name, property + "." + nestedProperty.name);
+            }
+        }
+    }
+
+    /**
+     * Per joined object: wraps values of getters having nested joined properties and extracts nested properties
+     * by their full path from the owner. A wrapper is reused while the getter returns the same object, proxies
+     * may be shared by threads.
+     */
+    private final class NestingExtractor implements PropertyExtractor {
+        private final PropertyExtractor extractor;
+        private final AtomicReferenceArray<Wrapped> wrapped = new AtomicReferenceArray<>(nestedJoins.size());
+
+        NestingExtractor(final PropertyExtractor extractor) {
+            this.extractor = extractor;
+        }
+
+        void reset() {
+            for (int i = 0; i < wrapped.length(); i++) {
+                wrapped.lazySet(i, null);
+            }
+        }
+
+        @Override
+        public Object get(final Object obj, final String property) {
+            final NestedJoin nestedJoin = nestedJoins.get(property);
+            if (nestedJoin == null) {
+                return extractor.get(obj, property);
+            }
+            final Object value = nestedJoin.accessors.get(obj.getClass()).get(obj);
+            if (value == null) {
+                return null;
+            }
+            final Wrapped cached = wrapped.get(nestedJoin.index);
+            if (cached != null && cached.value == value) {
+                return cached.wrapper;
+            }
+            final Object result = nestedJoin.joiner.joinProperties(
+                    value,
+                    (nested, nestedProperty) -> get(obj, nestedJoin.paths.get(nestedProperty))
+            );
+            wrapped.set(nestedJoin.index, new Wrapped(value, result));
+            return result;
+        }
+    }
+
+    private static final class Wrapped {
+        final Object value;
+        final Object wrapper;
+
+        Wrapped(final Object value, final Object wrapper) {
+            this.value = value;
+            this.wrapper = wrapper;
+        }
+    }
+
+    /**
+     * Adds the key constant of {@link DelegateProxyGenerator} to the generated class.
+     */
+    private static final class KeyedEnhancer extends Enhancer {
+        private final String key;
+
+        KeyedEnhancer(final String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void generateClass(final ClassVisitor v) throws Exception {
+            super.generateClass(new ClassVisitor(ASM4, v) {
+                @Override
+                public void visitEnd() {
+                    super.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, DelegateProxyGenerator.KEY_FIELD,
+                            getDescriptor(String.class), null, key).visitEnd();
+                    super.visitEnd();
+                }
+            });
+        }
+    }
+
+    private static final class ProxyClass {
+        final Class<?> clazz;
+        final Instantiator<?> instantiator;
+
+        ProxyClass(final Class<?> clazz, final Instantiator<?> instantiator) {
+            this.clazz = clazz;
+            this.instantiator = instantiator;
+        }
+    }
+
+    /**
+     * Property names are sorted and their hash is computed once per joiner.
+     */
     private static final class ProxyClassKey {
         final Class<?> clazz;
-        final Set<String> mixedPropertyNames;
+        final String[] mixedPropertyNames;
+        final Class<?>[] mixedPropertyTypes;
+        final String[] nestedPropertyNames;
+        final Mode mode;
+        final int hash;
 
-        ProxyClassKey(final Class<?> clazz, final Set<String> mixedPropertyNames) {
+        ProxyClassKey(
+                final Class<?> clazz,
+                final String[] mixedPropertyNames,
+                final Class<?>[] mixedPropertyTypes,
+                final String[] nestedPropertyNames,
+                final Mode mode,
+                final int propertiesHash
+        ) {
             this.clazz = clazz;
             this.mixedPropertyNames = mixedPropertyNames;
+            this.mixedPropertyTypes = mixedPropertyTypes;
+            this.nestedPropertyNames = nestedPropertyNames;
+            this.mode = mode;
+            this.hash = 31 * clazz.hashCode() + propertiesHash;
+        }
+
+        static int hash(
+                final String[] mixedPropertyNames,
+                final Class<?>[] mixedPropertyTypes,
+                final String[] nestedPropertyNames,
+                final Mode mode
+        ) {
+            return Objects.hash(
+                    Arrays.hashCode(mixedPropertyNames),
+                    Arrays.hashCode(mixedPropertyTypes),
+                    Arrays.hashCode(nestedPropertyNames),
+                    mode
+            );
         }
 
         @Override
@@ -126,13 +1033,47 @@ public class PropertyJoiner {
                 return false;
             }
             final ProxyClassKey that = (ProxyClassKey) obj;
-            return Objects.equals(clazz, that.clazz) &&
-                    Objects.equals(mixedPropertyNames, that.mixedPropertyNames);
+            return hash == that.hash &&
+                    clazz == that.clazz &&
+                    mode == that.mode &&
+                    Arrays.equals(mixedPropertyNames, that.mixedPropertyNames) &&
+                    Arrays.equals(mixedPropertyTypes, that.mixedPropertyTypes) &&
+                    Arrays.equals(nestedPropertyNames, that.nestedPropertyNames);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(clazz, mixedPropertyNames);
+            return hash;
+        }
+
+        /**
+         * @return name of the proxy class, depends only on the key
+         */
+        String getClassName() {
+            return GeneratedClasses.getClassName(clazz, "$$JoinedByPropertyJoiner$$" + Integer.toHexString(describe().hashCode()));
+        }
+
+        String describe() {
+            final StringBuilder result = new StringBuilder(mode.name()).append(':');
+            for (int i = 0; i < mixedPropertyNames.length; i++) {
+                result.append(mixedPropertyNames[i]).append(' ').append(mixedPropertyTypes[i].getName()).append(',');
+            }
+            result.append(':');
+            for (final String nestedPropertyName : nestedPropertyNames) {
+                result.append(nestedPropertyName).append(',');
+            }
+            return result.toString();
+        }
+
+        Map<String, Class<?>> getJoinedProperties() {
+            final Map<String, Class<?>> joinedProperties = new HashMap<>();
+            for (int i = 0; i < mixedPropertyNames.length; i++) {
+                joinedProperties.put(mixedPropertyNames[i], mixedPropertyTypes[i]);
+            }
+            for (final String nestedPropertyName : nestedPropertyNames) {
+                joinedProperties.put(nestedPropertyName, Object.class);
+            }
+            return joinedProperties;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,308 @@
+package ru.bdm.reflection;
+
+import net.sf.cglib.core.ClassGenerator;
+import net.sf.cglib.core.DefaultGeneratorStrategy;
+import net.sf.cglib.proxy.Enhancer;
+import org.objectweb.asm.ClassReader;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static ru.bdm.reflection.PropertyJoiner.JoinedProperty;
+import static ru.bdm.reflection.PropertyJoiner.Mode;
+import static ru.bdm.reflection.Util.propagate;
+
+/**
+ * Generates proxy classes of {@link PathExtractor} and {@link PropertyJoiner} at build time, so that they are
+ * loaded from the jar instead of being generated at runtime. Run it after compilation, e.g. with
+ * exec-maven-plugin:
+ * <pre>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *     &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;phase&gt;process-classes&lt;/phase&gt;
+ *             &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *             &lt;configuration&gt;
+ *                 &lt;mainClass&gt;ru.bdm.reflection.ProxyPregenerator&lt;/mainClass&gt;
+ *                 &lt;arguments&gt;
+ *                     &lt;argument&gt;${project.build.outputDirectory}&lt;/argument&gt;
+ *                     &lt;argument&gt;package:com.example.model&lt;/argument&gt;
+ *                     &lt;argument&gt;joiner:com.example.model.Pet:DELEGATE:ownerName,age/int&lt;/argument&gt;
+ *                 &lt;/arguments&gt;
+ *             &lt;/configuration&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * Arguments: the output directory, then any number of
+ * <ul>
+ * <li>{@code package:<name>} - proxies of {@link PathExtractor} for the classes of the package and its subpackages
+ * and for the types reachable through their getters</li>
+ * <li>{@code class:<name>} - the same for a single class</li>
+ * <li>{@code joiner:<class>[,<class>...]:<mode>:<property>[/<type>],...} - proxy of a {@link PropertyJoiner}
+ * with the mode and properties for the classes, the type of a property is a primitive or a class name</li>
+ * </ul>
+ * Classes are found by name at runtime and generated only if missing.
+ */
+public final class ProxyPregenerator {
+
+    private static final String USAGE = "usage: ProxyPregenerator <output directory> "
+            + "[package:<name> | class:<name> | joiner:<class>[,<class>...]:<mode>:<property>[/<type>],...]...";
+
+    private final File outputDirectory;
+    private final ClassLoader classLoader;
+    private final Map<String, byte[]> classes = new LinkedHashMap<>();
+    private final Set<Class<?>> pathProxies = new LinkedHashSet<>();
+    private final Set<Class<?>> collectionProxies = new LinkedHashSet<>();
+
+    public ProxyPregenerator(final @Nonnull File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+        // cglib classes are generated in an own class loader, so the names are not taken by classes of this JVM
+        this.classLoader = new ClassLoader(ProxyPregenerator.class.getClassLoader()) {
+        };
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException(USAGE);
+        }
+        final ProxyPregenerator pregenerator = new ProxyPregenerator(new File(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            for (final String spec : args[i].trim().split("\\s+")) {
+                if (!spec.isEmpty()) {
+                    pregenerator.add(spec);
+                }
+            }
+        }
+        pregenerator.write();
+        System.out.println("pregenerated " + pregenerator.getClasses().size() + " classes to " + args[0]);
+    }
+
+    /**
+     * @param spec see the arguments of {@link #main(String[])}
+     */
+    public void add(final @Nonnull String spec) {
+        final int colon = spec.indexOf(':');
+        final String kind = colon < 0 ? "" : spec.substring(0, colon);
+        final String value = spec.substring(colon + 1);
+        switch (kind) {
+            case "package":
+                addPackage(value);
+                break;
+            case "class":
+                addPathProxy(loadClass(value));
+                break;
+            case "joiner":
+                addJoiner(value);
+                break;
+            default:
+                throw new IllegalArgumentException("bad spec " + spec + ", " + USAGE);
+        }
+    }
+
+    public void addPackage(final @Nonnull String packageName) {
+        for (final Class<?> clazz : findClasses(packageName)) {
+            addPathProxy(clazz);
+        }
+    }
+
+    /**
+     * Adds proxies for the class and for the types of its getters, the same way {@link PathExtractor} creates them.
+     * Proxies of non-public classes are left to runtime generation.
+     */
+    public void addPathProxy(final @Nonnull Class<?> entityClass) {
+        if (!Modifier.isPublic(entityClass.getModifiers()) || !PathExtractor.isProxied(entityClass)
+                || !pathProxies.add(entityClass)) {
+            return;
+        }
+        capture(PathExtractor.createProxyEnhancer(entityClass));
+        for (final Method method : entityClass.getMethods()) {
+            if (method.getParameterTypes().length != 0 || method.getDeclaringClass() == Object.class
+                    || Util.getPropertyName(method) == null) {
+                continue;
+            }
+            final Class<?> returnType = method.getReturnType();
+            if (Collection.class.isAssignableFrom(returnType)) {
+                if (Modifier.isPublic(returnType.getModifiers()) && collectionProxies.add(returnType)) {
+                    capture(PathExtractor.createCollectionProxyEnhancer(returnType));
+                }
+                final Class<?> itemType = Util.getCollectionItemType(method);
+                if (itemType != null) {
+                    addPathProxy(itemType);
+                }
+            } else {
+                addPathProxy(returnType);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the class is not public and the joiner is not in {@link Mode#DELEGATE} mode
+     */
+    public void addJoinedProxy(final @Nonnull Class<?> entityClass, final @Nonnull PropertyJoiner joiner) {
+        if (joiner.getMode() != Mode.DELEGATE && !Modifier.isPublic(entityClass.getModifiers())) {
+            throw new IllegalArgumentException("proxy of non-public " + entityClass.getName() + " can't be pregenerated");
+        }
+        joiner.pregenerate(entityClass, new CapturingStrategy(), classLoader, classes::put);
+    }
+
+    /**
+     * @return pregenerated classes by name
+     */
+    public Map<String, byte[]> getClasses() {
+        return Collections.unmodifiableMap(classes);
+    }
+
+    public void write() throws IOException {
+        for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            final File file = new File(outputDirectory, entry.getKey().replace('.', File.separatorChar) + ".class");
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), entry.getValue());
+        }
+    }
+
+    private void addJoiner(final String spec) {
+        final String[] parts = spec.split(":", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("bad joiner spec " + spec + ", " + USAGE);
+        }
+        final List<JoinedProperty> properties = new ArrayList<>();
+        for (final String property : parts[2].split(",")) {
+            final int slash = property.indexOf('/');
+            properties.add(slash < 0
+                    ? JoinedProperty.property(property)
+                    : JoinedProperty.property(property.substring(0, slash), loadClass(property.substring(slash + 1))));
+        }
+        final PropertyJoiner joiner = new PropertyJoiner(
+                Mode.valueOf(parts[1]),
+                (obj, property) -> {
+                    throw new UnsupportedOperationException();
+                },
+                properties.toArray(new JoinedProperty[0])
+        );
+        for (final String className : parts[0].split(",")) {
+            addJoinedProxy(loadClass(className), joiner);
+        }
+    }
+
+    private void capture(final Enhancer enhancer) {
+        enhancer.setClassLoader(classLoader);
+        enhancer.setStrategy(new CapturingStrategy());
+        enhancer.setAttemptLoad(false);
+        enhancer.setUseCache(false);
+        enhancer.createClass();
+    }
+
+    private static Class<?> loadClass(final String name) {
+        switch (name) {
+            case "int":
+                return int.class;
+            case "long":
+                return long.class;
+            case "double":
+                return double.class;
+            case "boolean":
+                return boolean.class;
+            case "float":
+                return float.class;
+            case "short":
+                return short.class;
+            case "byte":
+                return byte.class;
+            case "char":
+                return char.class;
+            default:
+                try {
+                    return Class.forName(name, false, ProxyPregenerator.class.getClassLoader());
+                } catch (final ClassNotFoundException e) {
+                    throw propagate(e);
+                }
+        }
+    }
+
+    private static List<Class<?>> findClasses(final String packageName) {
+        final String path = packageName.replace('.', '/');
+        final Set<String> classNames = new LinkedHashSet<>();
+        try {
+            final Enumeration<URL> resources = ProxyPregenerator.class.getClassLoader().getResources(path);
+            while (resources.hasMoreElements()) {
+                final URL resource = resources.nextElement();
+                if ("jar".equals(resource.getProtocol())) {
+                    final JarURLConnection connection = (JarURLConnection) resource.openConnection();
+                    connection.setUseCaches(false);
+                    try (JarFile jar = connection.getJarFile()) {
+                        final Enumeration<JarEntry> entries = jar.entries();
+                        while (entries.hasMoreElements()) {
+                            final String name = entries.nextElement().getName();
+                            if (name.startsWith(path + "/") && name.endsWith(".class")) {
+                                classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+                            }
+                        }
+                    }
+                } else if ("file".equals(resource.getProtocol())) {
+                    findClassNames(new File(URLDecoder.decode(resource.getPath(), UTF_8.name())), packageName, classNames);
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final List<Class<?>> result = new ArrayList<>();
+        for (final String className : classNames) {
+            final Class<?> clazz = loadClass(className);
+            if (Modifier.isPublic(clazz.getModifiers()) && !clazz.isAnonymousClass() && !clazz.isSynthetic()
+                    && !clazz.isAnnotation() && !clazz.isEnum()) {
+                result.add(clazz);
+            }
+        }
+        return result;
+    }
+
+    private static void findClassNames(final File directory, final String packageName, final Set<String> classNames) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                findClassNames(file, packageName + "." + file.getName(), classNames);
+            } else if (file.getName().endsWith(".class")) {
+                final String name = file.getName();
+                classNames.add(packageName + "." + name.substring(0, name.length() - ".class".length()));
+            }
+        }
+    }
+
+    /**
+     * Keeps the bytecode of the generated class.
+     */
+    private final class CapturingStrategy extends DefaultGeneratorStrategy {
+        @Override
+        public byte[] generate(final ClassGenerator cg) throws Exception {
+            final byte[] bytes = super.generate(cg);
+            classes.put(new ClassReader(bytes).getClassName().replace('/', '.'), bytes);
+            return bytes;
+        }
+    }
+}
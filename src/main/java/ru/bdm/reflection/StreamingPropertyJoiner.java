@@ -0,0 +1,109 @@
+package ru.bdm.reflection;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+import static ru.bdm.reflection.PropertyJoiner.BatchPropertyExtractor;
+import static ru.bdm.reflection.PropertyJoiner.Mode;
+
+/**
+ * Joins properties to the elements of a stream or an iterator: elements are pulled in windows
+ * and the {@link BatchPropertyExtractor} is called once per window. Only the current window is held
+ * in memory, the order of elements is preserved.
+ */
+public class StreamingPropertyJoiner {
+
+    private final PropertyJoiner joiner;
+    private final BatchPropertyExtractor extractor;
+    private final int windowSize;
+
+    public StreamingPropertyJoiner(
+            final @Nonnull BatchPropertyExtractor extractor,
+            final int windowSize,
+            final @Nonnull String... properties
+    ) {
+        this(Mode.INVOCATION_HANDLER, extractor, windowSize, properties);
+    }
+
+    public StreamingPropertyJoiner(
+            final @Nonnull Mode mode,
+            final @Nonnull BatchPropertyExtractor extractor,
+            final int windowSize,
+            final @Nonnull String... properties
+    ) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("bad window size: " + windowSize);
+        }
+        this.joiner = new PropertyJoiner(mode, (obj, property) -> {
+            throw new IllegalStateException("property " + property + " is not extracted");
+        }, properties);
+        this.extractor = extractor;
+        this.windowSize = windowSize;
+    }
+
+    public <T> Iterator<T> joinProperties(final @Nonnull Iterator<? extends T> iterator) {
+        return new WindowIterator<>(requireNonNull(iterator));
+    }
+
+    /**
+     * @return sequential stream, closing it closes the source stream
+     */
+    public <T> Stream<T> joinProperties(final @Nonnull Stream<? extends T> stream) {
+        final Iterator<T> iterator = joinProperties(stream.iterator());
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(stream::close);
+    }
+
+    private final class WindowIterator<T> implements Iterator<T> {
+        private final Iterator<? extends T> source;
+        private final List<T> window = new ArrayList<>(windowSize);
+        private List<? extends Map<String, ?>> values;
+        private int position;
+
+        WindowIterator(final Iterator<? extends T> source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < window.size() || source.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (position == window.size()) {
+                nextWindow();
+            }
+            final T t = window.get(position);
+            final Map<String, ?> objectValues = values.get(position++);
+            return joiner.joinProperties(t, (obj, property) -> objectValues.get(property));
+        }
+
+        private void nextWindow() {
+            window.clear();
+            position = 0;
+            while (window.size() < windowSize && source.hasNext()) {
+                window.add(requireNonNull(source.next()));
+            }
+            if (window.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            values = extractor.get(window, joiner.getProperties());
+            if (values.size() != window.size()) {
+                throw new IllegalStateException(
+                        "extractor returned " + values.size() + " values for " + window.size() + " objects"
+                );
+            }
+        }
+    }
+}
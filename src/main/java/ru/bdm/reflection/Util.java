@@ -3,13 +3,17 @@ package ru.bdm.reflection;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import static java.lang.Character.isUpperCase;
 import static java.lang.Character.toLowerCase;
 import static java.lang.Character.toUpperCase;
 import static java.util.Arrays.asList;
@@ -34,6 +38,19 @@ public final class Util {
             SETTER_PREFIX
     ));
 
+    private static final ClassValue<Set<Method>> PLAIN_ACCESSORS = new ClassValue<Set<Method>>() {
+        @Override
+        protected Set<Method> computeValue(final Class<?> type) {
+            final Set<Method> result = new HashSet<>();
+            for (final Method method : type.getDeclaredMethods()) {
+                if (isPlainAccessor(method)) {
+                    result.add(method);
+                }
+            }
+            return result;
+        }
+    };
+
     private Util() {
     }
 
@@ -156,8 +173,21 @@ public final class Util {
         return res;
     }
 
+    /**
+     * @return name of the property for a bean accessor ({@code getName}, {@code isActive}, {@code setName})
+     * or for a record-style accessor ({@code name()}) of a field with the same name and type
+     */
     public static String getPropertyName(final Method accessor) {
         final String accessorName = accessor.getName();
+        for (String accessorNamePrefix : PROPERTY_ACCESSOR_PREFIXES) {
+            if (accessorName.length() > accessorNamePrefix.length() && accessorName.startsWith(accessorNamePrefix)
+                    && isUpperCase(accessorName.charAt(accessorNamePrefix.length()))) {
+                return lowerFirst(accessorName.substring(accessorNamePrefix.length()));
+            }
+        }
+        if (PLAIN_ACCESSORS.get(accessor.getDeclaringClass()).contains(accessor)) {
+            return accessorName;
+        }
         for (String accessorNamePrefix : PROPERTY_ACCESSOR_PREFIXES) {
             if (!accessorName.startsWith(accessorNamePrefix)) {
                 continue;
@@ -167,6 +197,30 @@ public final class Util {
         return null;
     }
 
+    private static boolean isPlainAccessor(final Method method) {
+        if (method.getParameterTypes().length != 0 || method.getReturnType() == void.class
+                || Modifier.isStatic(method.getModifiers())) {
+            return false;
+        }
+        final Field field = findField(method.getDeclaringClass(), method.getName());
+        return field != null && method.getReturnType().isAssignableFrom(field.getType());
+    }
+
+    /**
+     * @return non-static field declared in the class or its superclasses
+     */
+    static Field findField(final Class<?> type, final String name) {
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            try {
+                final Field field = clazz.getDeclaredField(name);
+                return Modifier.isStatic(field.getModifiers()) ? null : field;
+            } catch (final NoSuchFieldException ignored) {
+                //look in superclass
+            }
+        }
+        return null;
+    }
+
     public static String lowerFirst(final String string) {
         final char[] chars = string.toCharArray();
         chars[0] = toLowerCase(chars[0]);
@@ -180,6 +234,10 @@ public final class Util {
         ) + upperFirst(name);
     }
 
+    public static String getSetterName(final String name) {
+        return SETTER_PREFIX + upperFirst(name);
+    }
+
     public static String upperFirst(final String name) {
         char[] nameChars = name.toCharArray();
         nameChars[0] = toUpperCase(nameChars[0]);
@@ -0,0 +1,123 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.beanutils.PropertyUtils.getProperty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static ru.bdm.reflection.PropertyJoiner.Mode;
+import static ru.bdm.reflection.PropertyJoinerTest.AnyType;
+
+public class AsyncPropertyJoinerTest {
+
+    @Test
+    public void allPropertiesAreExtractedConcurrently() throws Exception {
+        final int count = 10;
+        final CountDownLatch allStarted = new CountDownLatch(count * 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(count * 2);
+
+        final AsyncPropertyJoiner joiner = new AsyncPropertyJoiner(
+                (obj, property) -> {
+                    // blocks until every extraction is started, so it completes only if they run concurrently
+                    allStarted.countDown();
+                    try {
+                        return CompletableFuture.completedFuture(
+                                allStarted.await(10, TimeUnit.SECONDS) ? property + "Value" : "timeout"
+                        );
+                    } catch (final InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                },
+                executor,
+                "first", "second"
+        );
+
+        final List<AnyType> objects = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            objects.add(new AnyType());
+        }
+
+        try {
+            final List<AnyType> joined = joiner.joinProperties(objects);
+
+            assertEquals(count, joined.size());
+            for (final AnyType q : joined) {
+                assertEquals("firstValue", getProperty(q, "first"));
+                assertEquals("secondValue", getProperty(q, "second"));
+                assertEquals("anyPropertyValue", q.getAnyProperty());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void defaultExecutorIsBounded() throws Exception {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final AsyncPropertyJoiner joiner = new AsyncPropertyJoiner(
+                (obj, property) -> {
+                    threads.add(Thread.currentThread());
+                    try {
+                        Thread.sleep(1);
+                    } catch (final InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return CompletableFuture.completedFuture(property);
+                },
+                AsyncPropertyJoiner.defaultExecutor(),
+                "first", "second", "third", "fourth"
+        );
+        final List<AnyType> objects = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            objects.add(new AnyType());
+        }
+
+        for (final AnyType joined : joiner.joinProperties(objects)) {
+            assertEquals("fourth", getProperty(joined, "fourth"));
+        }
+
+        // virtual threads are not pooled
+        assumeTrue(threads.stream().allMatch(thread -> thread.getName().equals(AsyncPropertyJoiner.class.getSimpleName())));
+        assertTrue(threads.size() + " threads", threads.size() <= Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    public void getterRethrowsExtractionFailure() throws Exception {
+        final AsyncPropertyJoiner joiner = new AsyncPropertyJoiner(
+                Mode.DELEGATE,
+                (obj, property) -> {
+                    final CompletableFuture<Object> result = new CompletableFuture<>();
+                    result.completeExceptionally(new UnsupportedOperationException(property));
+                    return result;
+                },
+                Runnable::run,
+                "first"
+        );
+
+        final List<AnyType> objects = new ArrayList<>();
+        objects.add(new AnyType());
+
+        final AnyType joined = joiner.joinProperties(objects).get(0);
+
+        assertEquals("anyPropertyValue", joined.getAnyProperty());
+        try {
+            getProperty(joined, "first");
+            fail();
+        } catch (final InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof UnsupportedOperationException);
+        }
+    }
+}
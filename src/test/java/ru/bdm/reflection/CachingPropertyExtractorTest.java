@@ -0,0 +1,153 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.commons.beanutils.PropertyUtils.getProperty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static ru.bdm.reflection.PropertyJoinerTest.AnyType;
+import static ru.bdm.reflection.PropertyJoinerTest.NamedType;
+
+public class CachingPropertyExtractorTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void sharedByJoiners() throws Exception {
+        final CachingPropertyExtractor cache = new CachingPropertyExtractor(
+                (obj, property) -> property + calls.incrementAndGet(), 100
+        );
+        final PropertyJoiner delegate = new PropertyJoiner(PropertyJoiner.Mode.DELEGATE, cache, "first");
+        final PropertyJoiner handler = new PropertyJoiner(PropertyJoiner.Mode.INVOCATION_HANDLER, cache, "first");
+
+        final AnyType entity = new AnyType();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("first1", getProperty(delegate.joinProperties(entity), "first"));
+            assertEquals("first1", getProperty(handler.joinProperties(entity), "first"));
+        }
+        assertEquals("first2", getProperty(delegate.joinProperties(new AnyType()), "first"));
+
+        assertEquals(2, calls.get());
+        assertEquals(2, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void keyFunction() {
+        final CachingPropertyExtractor cache = new CachingPropertyExtractor(
+                (obj, property) -> calls.incrementAndGet() == 1 ? null : property,
+                obj -> ((NamedType) obj).getName(), 100, 0, TimeUnit.SECONDS
+        );
+
+        assertNull(cache.get(named("john"), "first"));
+        assertNull(cache.get(named("john"), "first"));
+        assertEquals("first", cache.get(named("jane"), "first"));
+        assertEquals("second", cache.get(named("jane"), "second"));
+
+        assertEquals(3, calls.get());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void keysOfDifferentClasses() {
+        final CachingPropertyExtractor cache = new CachingPropertyExtractor(
+                (obj, property) -> obj.getClass().getSimpleName(), obj -> 1, 100, 0, TimeUnit.SECONDS
+        );
+
+        assertEquals("NamedType", cache.get(named("john"), "first"));
+        assertEquals("AnyType", cache.get(new AnyType(), "first"));
+        assertEquals("NamedType", cache.get(named("jane"), "first"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void maximumSizeIsShared() {
+        for (final int maximumSize : new int[]{1, 5, 20, 161}) {
+            final CachingPropertyExtractor cache = new CachingPropertyExtractor(
+                    (obj, property) -> obj, obj -> obj, maximumSize, 0, TimeUnit.SECONDS
+            );
+            for (int i = 0; i < 1000; i++) {
+                cache.get(i, "first");
+            }
+
+            assertEquals(maximumSize, cache.size());
+            assertEquals(1000 - maximumSize, cache.getStats().getEvictions());
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedEviction() {
+        final CachingPropertyExtractor cache = new CachingPropertyExtractor(
+                (obj, property) -> calls.incrementAndGet(), obj -> obj, 160, 0, TimeUnit.SECONDS
+        );
+
+        final Object hot = cache.get("hot", "first");
+        for (int i = 0; i < 1000; i++) {
+            cache.get(i, "first");
+            assertEquals(hot, cache.get("hot", "first"));
+        }
+
+        assertEquals(1001, calls.get());
+        assertEquals(160, cache.size());
+        assertEquals(1001 - 160, cache.getStats().getEvictions());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void expireAfterWrite() {
+        final AtomicLong time = new AtomicLong();
+        final CachingPropertyExtractor cache = new CachingPropertyExtractor(
+                (obj, property) -> calls.incrementAndGet(), null, 100, 10, time::get
+        );
+        final Object entity = new Object();
+
+        assertEquals(1, cache.get(entity, "first"));
+        time.set(9);
+        assertEquals(1, cache.get(entity, "first"));
+        time.set(10);
+        assertEquals(2, cache.get(entity, "first"));
+
+        assertEquals(1, cache.getStats().getExpirations());
+        assertEquals(1.0 / 3, cache.getStats().getHitRate(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badMaximumSize() {
+        new CachingPropertyExtractor((obj, property) -> null, 0);
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        final CachingPropertyExtractor cache = new CachingPropertyExtractor(
+                (obj, property) -> property, obj -> obj, 64, 1, TimeUnit.MILLISECONDS
+        );
+        final Thread[] threads = new Thread[8];
+        final AtomicInteger errors = new AtomicInteger();
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    if (!("p" + i % 100).equals(cache.get(i % 300, "p" + i % 100))) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(160000, cache.getStats().getHits() + cache.getStats().getMisses());
+    }
+
+    private static NamedType named(final String name) {
+        final NamedType named = new NamedType();
+        named.setName(name);
+        return named;
+    }
+}
@@ -0,0 +1,173 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.ColumnExtractor.Columns;
+import static ru.bdm.reflection.ColumnExtractor.StringColumn;
+import static ru.bdm.reflection.PathAccessorTest.human;
+import static ru.bdm.reflection.PathAccessorTest.pet;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+
+public class ColumnExtractorTest {
+
+    private static final String[] PATHS = {"quantity", "amount", "price", "status", "customer.owner.name", "customer.owner.birth"};
+
+    @Test
+    public void extract() {
+        final List<Order> orders = Arrays.asList(
+                new Order(1, 10L, 1.5, Status.NEW, pet("rex", human("john", new Date(7)))),
+                new Order(2, null, 2.5, Status.DONE, null),
+                new Order(3, 30L, 3.5, Status.NEW, pet("tom", human("jane", null)))
+        );
+
+        final Columns columns = new ColumnExtractor<>(Order.class, PATHS).extract(new LinkedList<>(orders));
+
+        assertEquals(3, columns.size());
+        assertArrayEquals(new int[]{1, 2, 3}, columns.getIntColumn("quantity").values());
+        assertArrayEquals(new long[]{10, 0, 30}, columns.getLongColumn("amount").values());
+        assertTrue(columns.getLongColumn("amount").isNull(1));
+        assertEquals(1, columns.getLongColumn("amount").getNullCount());
+        assertArrayEquals(new double[]{1.5, 2.5, 3.5}, columns.getDoubleColumn("price").values(), 0);
+
+        final StringColumn status = columns.getStringColumn("status");
+        assertArrayEquals(new int[]{0, 1, 0}, status.codes());
+        assertEquals(Arrays.asList("NEW", "DONE"), status.getDictionary());
+
+        final StringColumn name = columns.getStringColumn("customer.owner.name");
+        assertEquals("john", name.get(0));
+        assertNull(name.get(1));
+        assertEquals("jane", name.get(2));
+
+        assertEquals(7, columns.getLongColumn("customer.owner.birth").get(0));
+        assertFalse(columns.getLongColumn("customer.owner.birth").isNull(0));
+        assertEquals(2, columns.getLongColumn("customer.owner.birth").getNullCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multiValuedPath() {
+        new ColumnExtractor<>(Pet.class, "owner.relatives.name");
+    }
+
+    @Test
+    public void parallelPerformanceTest() {
+        final List<Order> orders = orders(300000);
+        final ColumnExtractor<Order> extractor = new ColumnExtractor<>(Order.class, PATHS);
+        for (int i = 0; i < 3; i++) {
+            extractor.extract(orders);
+            extractor.extractParallel(orders);
+        }
+
+        long t0 = System.currentTimeMillis();
+
+        final Columns columns = extractor.extract(orders);
+
+        long t1 = System.currentTimeMillis();
+
+        final Columns parallelColumns = extractor.extractParallel(orders);
+
+        long t2 = System.currentTimeMillis();
+
+        assertArrayEquals(columns.getIntColumn("quantity").values(), parallelColumns.getIntColumn("quantity").values());
+        assertArrayEquals(columns.getLongColumn("amount").values(), parallelColumns.getLongColumn("amount").values());
+        assertEquals(columns.getLongColumn("amount").getNullCount(), parallelColumns.getLongColumn("amount").getNullCount());
+        assertArrayEquals(columns.getDoubleColumn("price").values(), parallelColumns.getDoubleColumn("price").values(), 0);
+        assertArrayEquals(columns.getStringColumn("customer.owner.name").codes(), parallelColumns.getStringColumn("customer.owner.name").codes());
+        assertEquals(columns.getStringColumn("customer.owner.name").getDictionary(), parallelColumns.getStringColumn("customer.owner.name").getDictionary());
+
+        System.out.println("columnsExtractTime: " + (t1 - t0));
+        System.out.println("columnsParallelExtractTime: " + (t2 - t1) + " parallelism: " + ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    @Test
+    public void allocationPerformanceTest() {
+        final List<Order> orders = orders(300000);
+        final ColumnExtractor<Order> extractor = new ColumnExtractor<>(Order.class, "quantity", "price", "customer.owner.birth");
+        for (int i = 0; i < 3; i++) {
+            extractor.extract(orders);
+        }
+
+        final long b0 = allocatedBytes();
+
+        final Columns columns = extractor.extract(orders);
+
+        final long b1 = allocatedBytes();
+
+        System.out.println("columnsExtract allocatedBytes: " + (b1 - b0));
+        assertEquals(299999, columns.getIntColumn("quantity").get(299999));
+        // int, double and long values and three null bitmaps, nothing per row
+        final long columnsBytes = (4L + 8 + 8) * orders.size() + 3L * orders.size() / 8;
+        assertTrue("allocated " + (b1 - b0), b1 - b0 < columnsBytes + 64 * 1024);
+    }
+
+    private static List<Order> orders(final int count) {
+        final List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            orders.add(new Order(
+                    i,
+                    i % 7 == 0 ? null : (long) i * 3,
+                    i / 2.0,
+                    Status.values()[i % 2],
+                    pet("pet" + i % 100, human("human" + (i * 31) % 1000, new Date(i)))
+            ));
+        }
+        return orders;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public enum Status {
+        NEW, DONE
+    }
+
+    public static class Order {
+        private final int quantity;
+        private final Long amount;
+        private final double price;
+        private final Status status;
+        private final Pet customer;
+
+        Order(final int quantity, final Long amount, final double price, final Status status, final Pet customer) {
+            this.quantity = quantity;
+            this.amount = amount;
+            this.price = price;
+            this.status = status;
+            this.customer = customer;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public Long getAmount() {
+            return amount;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Pet getCustomer() {
+            return customer;
+        }
+    }
+}
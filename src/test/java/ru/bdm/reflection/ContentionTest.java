@@ -0,0 +1,142 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.commons.beanutils.PropertyUtils.getProperty;
+import static org.junit.Assert.assertEquals;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+import static ru.bdm.reflection.PropertyJoinerTest.AnyType;
+
+/**
+ * Path extraction and joining from many threads at once: correctness under contention on the generator caches
+ * and throughput by the number of threads.
+ */
+public class ContentionTest {
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final AtomicInteger UNIQUE = new AtomicInteger();
+
+    @Test
+    public void pathsUnderContention() throws Exception {
+        runConcurrently(THREADS, 2000, (thread, i) -> {
+            switch ((thread + i) % 3) {
+                case 0:
+                    assertEquals("owner.name", PathExtractor.getPath(Pet.class, pet -> pet.getOwner().getName()));
+                    break;
+                case 1:
+                    assertEquals("owner.relatives.birth", PathExtractor.getPath(
+                            Pet.class, pet -> PathExtractor.mask(pet.getOwner().getRelatives()).getBirth()
+                    ));
+                    break;
+                default:
+                    assertEquals("relatives.name", PathExtractor.getPath(
+                            Human.class, human -> PathExtractor.mask(human.getRelatives()).getName()
+                    ));
+            }
+        });
+    }
+
+    @Test
+    public void joinsUnderContention() throws Exception {
+        for (final PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            final PropertyJoiner shared = new PropertyJoiner(mode, (obj, property) -> property + "Value", "first", "second");
+            runConcurrently(THREADS, 500, (thread, i) -> {
+                final AnyType joined = shared.joinProperties(new AnyType());
+                assertEquals("firstValue", getProperty(joined, "first"));
+                assertEquals("anyPropertyValue", joined.getAnyProperty());
+
+                // cold: a new proxy class for every few joins
+                final String property = "cold" + UNIQUE.incrementAndGet() % 64 + "x" + thread;
+                final AnyType cold = new PropertyJoiner(mode, (obj, p) -> p, property).joinProperties(new AnyType());
+                assertEquals(property, getProperty(cold, property));
+
+                final AnyType mapJoined = PropertyJoiner.joinProperties(
+                        new AnyType(), Collections.singletonMap("map" + thread % 4, i)
+                );
+                assertEquals(i, getProperty(mapJoined, "map" + thread % 4));
+            });
+        }
+    }
+
+    @Test
+    public void scalabilityPerformanceTest() throws Exception {
+        final PropertyJoiner joiner = new PropertyJoiner(
+                PropertyJoiner.Mode.DELEGATE, (obj, property) -> property, "first", "second"
+        );
+        final int operations = 100000;
+        final int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= processors * 2; threads *= 2) {
+            final int iterations = operations / threads;
+
+            long t0 = System.currentTimeMillis();
+
+            runConcurrently(threads, iterations, (thread, i) -> PathExtractor.getPath(Pet.class, pet -> pet.getOwner().getName()));
+
+            long t1 = System.currentTimeMillis();
+
+            runConcurrently(threads, iterations, (thread, i) -> joiner.joinProperties(new AnyType()).getAnyProperty());
+
+            long t2 = System.currentTimeMillis();
+
+            System.out.println("threads " + threads + " getPathTime: " + (t1 - t0) + " joinTime: " + (t2 - t1));
+        }
+
+        final ExecutorService executor = (ExecutorService) AsyncPropertyJoiner.defaultExecutor();
+        final int tasks = 10000;
+
+        long t0 = System.currentTimeMillis();
+
+        final List<Future<?>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            futures.add(executor.submit(() -> {
+                PathExtractor.getPath(Pet.class, pet -> pet.getOwner().getName());
+                return joiner.joinProperties(new AnyType()).getAnyProperty();
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+
+        long t1 = System.currentTimeMillis();
+
+        System.out.println("defaultExecutor tasks " + tasks + " getPathAndJoinTime: " + (t1 - t0));
+    }
+
+    private static void runConcurrently(final int threads, final int iterations, final Task task) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<?>> futures = new ArrayList<>(threads);
+            for (int thread = 0; thread < threads; thread++) {
+                final int threadNumber = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        task.run(threadNumber, i);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface Task {
+        void run(int thread, int iteration) throws Exception;
+    }
+}
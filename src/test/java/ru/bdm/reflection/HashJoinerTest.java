@@ -0,0 +1,127 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.apache.commons.beanutils.PropertyUtils.getProperty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static ru.bdm.reflection.PathAccessorTest.human;
+import static ru.bdm.reflection.PathAccessorTest.pet;
+import static ru.bdm.reflection.PathExtractorJava8.start;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+
+public class HashJoinerTest {
+
+    private static final String OWNER_NAME = start(Pet.class, Pet::getOwner).then(Human::getName).end();
+
+    private final List<City> cities = Arrays.asList(new City("john", "Moscow", 12), new City("jane", "Paris", 2));
+
+    @Test
+    public void join() throws Exception {
+        for (final PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            final HashJoiner<Pet, City> joiner = new HashJoiner<>(mode, Pet.class, OWNER_NAME, cities, City::getOwner, columns());
+            final Pet rex = pet("rex", human("john", null));
+
+            final List<Pet> joined = joiner.join(Arrays.asList(rex, pet("tom", human("bob", null)), pet("max", null)));
+
+            assertEquals(3, joined.size());
+            assertEquals("rex", joined.get(0).getName());
+            assertEquals("Moscow", getProperty(joined.get(0), "city"));
+            assertEquals(12, getProperty(joined.get(0), "population"));
+            assertNull(getProperty(joined.get(1), "city"));
+            assertNull(getProperty(joined.get(2), "population"));
+            assertSame(cities.get(0), joiner.lookup(rex));
+        }
+    }
+
+    @Test
+    public void joinMatching() throws Exception {
+        final Map<String, City> table = new HashMap<>();
+        for (final City city : cities) {
+            table.put(city.getOwner(), city);
+        }
+        final HashJoiner<Pet, City> joiner = new HashJoiner<>(PropertyJoiner.Mode.DELEGATE, Pet.class, OWNER_NAME, table, columns());
+
+        final List<Pet> joined = joiner.joinMatching(Arrays.asList(
+                pet("rex", human("john", null)), pet("tom", human("bob", null)), pet("max", human("jane", null))
+        ));
+
+        assertEquals(2, joined.size());
+        assertEquals("Moscow", getProperty(joined.get(0), "city"));
+        assertEquals("max", joined.get(1).getName());
+        assertEquals("Paris", getProperty(joined.get(1), "city"));
+    }
+
+    @Test
+    public void joinParallel() throws Exception {
+        final List<Pet> pets = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            pets.add(pet("pet" + i, human(i % 3 == 0 ? "jane" : "john", null)));
+        }
+        final HashJoiner<Pet, City> joiner = new HashJoiner<>(
+                PropertyJoiner.Mode.DELEGATE, Pet.class, OWNER_NAME, cities, City::getOwner, columns()
+        );
+
+        final List<Pet> joined = joiner.joinParallel(pets);
+
+        assertEquals(pets.size(), joined.size());
+        for (int i = 0; i < pets.size(); i++) {
+            assertEquals("pet" + i, joined.get(i).getName());
+            assertEquals(i % 3 == 0 ? "Paris" : "Moscow", getProperty(joined.get(i), "city"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateKey() {
+        new HashJoiner<>(
+                PropertyJoiner.Mode.DELEGATE, Pet.class, OWNER_NAME,
+                Arrays.asList(new City("john", "Moscow", 12), new City("john", "Paris", 2)), City::getOwner, columns()
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multiValuedKey() {
+        new HashJoiner<>(PropertyJoiner.Mode.DELEGATE, Pet.class, "owner.relatives.name", cities, City::getOwner, columns());
+    }
+
+    private static Map<String, Function<City, ?>> columns() {
+        final Map<String, Function<City, ?>> columns = new LinkedHashMap<>();
+        columns.put("city", City::getName);
+        columns.put("population", City::getPopulation);
+        return columns;
+    }
+
+    public static class City {
+        private final String owner;
+        private final String name;
+        private final int population;
+
+        City(final String owner, final String name, final int population) {
+            this.owner = owner;
+            this.name = name;
+            this.population = population;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPopulation() {
+            return population;
+        }
+    }
+}
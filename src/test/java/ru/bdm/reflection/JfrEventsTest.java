@@ -0,0 +1,84 @@
+package ru.bdm.reflection;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.beanutils.PropertyUtils.getProperty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+import static ru.bdm.reflection.PropertyJoinerTest.AnyType;
+
+public class JfrEventsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void eventsAreRecorded() throws Exception {
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("ru.bdm.reflection.ProxyGeneration");
+            recording.enable("ru.bdm.reflection.PathExtraction").withThreshold(Duration.ZERO);
+            recording.enable("ru.bdm.reflection.PropertyExtraction").withThreshold(Duration.ofMillis(5));
+            recording.start();
+
+            PathExtractor.getPath(Pet.class, pet -> pet.getOwner().getName());
+            final AnyType joined = new PropertyJoiner(
+                    PropertyJoiner.Mode.DELEGATE,
+                    (obj, property) -> {
+                        if (property.equals("slowJfrProperty")) {
+                            sleep();
+                        }
+                        return property;
+                    },
+                    "fastJfrProperty", "slowJfrProperty"
+            ).joinProperties(new AnyType());
+            assertEquals("fastJfrProperty", getProperty(joined, "fastJfrProperty"));
+            assertEquals("slowJfrProperty", getProperty(joined, "slowJfrProperty"));
+
+            recording.stop();
+            final Path file = folder.newFile("recording.jfr").toPath();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        final List<RecordedEvent> paths = byType(events, "ru.bdm.reflection.PathExtraction");
+        assertEquals(1, paths.size());
+        assertEquals("owner.name", paths.get(0).getString("path"));
+
+        final List<RecordedEvent> properties = byType(events, "ru.bdm.reflection.PropertyExtraction");
+        assertEquals(1, properties.size());
+        assertEquals("slowJfrProperty", properties.get(0).getString("property"));
+        assertEquals(AnyType.class.getName(), properties.get(0).getClass("objectClass").getName());
+
+        final List<String> generated = byType(events, "ru.bdm.reflection.ProxyGeneration").stream()
+                .map(event -> event.getString("proxyClass"))
+                .collect(Collectors.toList());
+        assertTrue(generated.toString(), generated.stream().anyMatch(name -> name.contains("JoinedByPropertyJoiner")));
+        assertTrue(generated.toString(), generated.stream().anyMatch(name -> name.contains("SlowJfrProperty")));
+    }
+
+    private static List<RecordedEvent> byType(final List<RecordedEvent> events, final String type) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(type))
+                .collect(Collectors.toList());
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathAccessorTest.human;
+import static ru.bdm.reflection.PathAccessorTest.pet;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+
+public class JsonPathWriterTest {
+
+    private final Pet rex = pet("rex \"the dog\"", human("john", new Date(1), human("ann", new Date(2)), human("bob", null)));
+
+    @Test
+    public void writePaths() throws IOException {
+        final JsonPathWriter<Pet> writer = new JsonPathWriter<>(
+                Pet.class, "name", "owner.name", "owner.relatives.name", "owner.relatives.birth"
+        );
+
+        final StringWriter out = new StringWriter();
+        writer.write(rex, out);
+
+        assertEquals(
+                "{\"name\":\"rex \\\"the dog\\\"\",\"owner\":{\"name\":\"john\",\"relatives\":"
+                        + "[{\"name\":\"ann\",\"birth\":2},{\"name\":\"bob\",\"birth\":null}]}}",
+                out.toString()
+        );
+    }
+
+    @Test
+    public void writeAllWithJoinedProperties() throws IOException {
+        final PropertyJoiner joiner = new PropertyJoiner(
+                (obj, property) -> property.equals("age") ? (Object) 3 : property + "@" + ((Pet) obj).getName(),
+                "age", "owner.fullName"
+        );
+        final JsonPathWriter<Pet> writer = new JsonPathWriter<>(Pet.class, joiner, "name");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeAll(Arrays.asList(pet("рекс", null), pet("tom", human("jane", null))), out);
+
+        assertEquals(
+                "[{\"name\":\"рекс\",\"age\":3,\"owner\":null},"
+                        + "{\"name\":\"tom\",\"age\":3,\"owner\":{\"fullName\":\"owner.fullName@tom\"}}]",
+                new String(out.toByteArray(), StandardCharsets.UTF_8)
+        );
+    }
+
+    @Test
+    public void writeLargePage() throws IOException {
+        final JsonPathWriter<Human> writer = new JsonPathWriter<>(Human.class, "name", "birth");
+        final Human[] humans = new Human[10000];
+        for (int i = 0; i < humans.length; i++) {
+            humans[i] = human("human" + i, new Date(-i));
+        }
+
+        final StringWriter out = new StringWriter();
+        writer.writeAll(Arrays.asList(humans), out);
+
+        final String json = out.toString();
+        assertTrue(json.startsWith("[{\"name\":\"human0\",\"birth\":0},{"));
+        assertTrue(json.endsWith("},{\"name\":\"human9999\",\"birth\":-9999}]"));
+    }
+
+    @Test
+    public void writeSurrogates() throws IOException {
+        final JsonPathWriter<Pet> writer = new JsonPathWriter<>(Pet.class, "name");
+        for (final String name : Arrays.asList("a\uD83D\uDE00b", "a\uD83D", "\uD83Dx", "\uDE00", "\uD83D\uD83D\uDE00")) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer.write(pet(name, null), out);
+
+            assertEquals(
+                    "{\"name\":\"" + new String(name.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8) + "\"}",
+                    new String(out.toByteArray(), StandardCharsets.UTF_8)
+            );
+        }
+    }
+
+    @Test
+    public void nestedWrite() throws IOException {
+        final JsonPathWriter<Report> writer = new JsonPathWriter<>(Report.class, "name", "summary");
+        final String expected = "{\"name\":\"outer\",\"summary\":\"{\\\"name\\\":\\\"inner\\\"}\"}";
+
+        final StringWriter chars = new StringWriter();
+        writer.write(new Report("outer", pet("inner", null)), chars);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new Report("outer", pet("inner", null)), bytes);
+
+        assertEquals(expected, chars.toString());
+        assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void allocationPerformanceTest() throws IOException {
+        final JsonPathWriter<Human> writer = new JsonPathWriter<>(Human.class, "name", "birth");
+        final Human[] humans = new Human[100000];
+        for (int i = 0; i < humans.length; i++) {
+            humans[i] = human("human" + i, new Date(i));
+        }
+        final Writer discarding = new Writer() {
+            @Override
+            public void write(final char[] buffer, final int offset, final int length) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            writer.writeAll(Arrays.asList(humans), discarding);
+        }
+
+        final long b0 = allocatedBytes();
+        final long t0 = System.currentTimeMillis();
+
+        writer.writeAll(Arrays.asList(humans), discarding);
+
+        final long t1 = System.currentTimeMillis();
+        final long b1 = allocatedBytes();
+
+        System.out.println("writeAllTime: " + (t1 - t0) + " allocatedBytes: " + (b1 - b0));
+        // the buffers are reused, nothing per object
+        assertTrue("allocated " + (b1 - b0), b1 - b0 < 64 * 1024);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static class Report {
+        private static final JsonPathWriter<Pet> PET_WRITER = new JsonPathWriter<>(Pet.class, "name");
+
+        private final String name;
+        private final Pet pet;
+
+        Report(final String name, final Pet pet) {
+            this.name = name;
+            this.pet = pet;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Writes the pet while the report is being written.
+         */
+        public String getSummary() throws IOException {
+            final StringWriter chars = new StringWriter();
+            PET_WRITER.write(pet, chars);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PET_WRITER.write(pet, bytes);
+            assertEquals(chars.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+            return chars.toString();
+        }
+    }
+}
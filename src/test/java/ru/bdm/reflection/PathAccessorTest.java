@@ -0,0 +1,159 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathExtractor.PropertyNotFound;
+import static ru.bdm.reflection.PathExtractorJava8.start;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+
+public class PathAccessorTest {
+
+    static Human human(final String name, final Date birth, final Human... relatives) {
+        final Human human = new Human();
+        human.setName(name);
+        human.setBirth(birth);
+        human.setRelatives(Arrays.asList(relatives));
+        return human;
+    }
+
+    static Pet pet(final String name, final Human owner) {
+        final Pet pet = new Pet();
+        pet.setName(name);
+        pet.setOwner(owner);
+        return pet;
+    }
+
+    @Test
+    public void getSingleValue() {
+        final PathAccessor accessor = PathAccessor.compile(Pet.class, start(Pet.class, Pet::getOwner).then(Human::getName).end());
+
+        assertFalse(accessor.isMultiValued());
+        assertEquals(String.class, accessor.getValueType());
+        assertEquals("john", accessor.get(pet("rex", human("john", null))));
+        assertNull(accessor.get(pet("rex", null)));
+        assertSame(accessor, PathAccessor.compile(Pet.class, "owner.name"));
+    }
+
+    @Test
+    public void getMultiValue() {
+        final PathAccessor accessor = PathAccessor.compile(Pet.class, "owner.relatives.birth");
+        final Date first = new Date(1);
+        final Date second = new Date(2);
+
+        assertTrue(accessor.isMultiValued());
+        assertEquals(Date.class, accessor.getValueType());
+        assertEquals(
+                Arrays.asList(first, second),
+                accessor.getAll(pet("rex", human("john", null, human("ann", first), human("bob", second))))
+        );
+        assertEquals(singletonList(null), PathAccessor.compile(Pet.class, "owner.name").getAll(pet("rex", null)));
+        assertTrue(accessor.getAll(pet("rex", null)).isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failOnGetMultiValue() {
+        PathAccessor.compile(Pet.class, "owner.relatives.name").get(new Pet());
+    }
+
+    @Test(expected = PropertyNotFound.class)
+    public void failOnUnknownProperty() {
+        PathAccessor.compile(Pet.class, "owner.nickname");
+    }
+
+    @Test
+    public void recordStyleAccessors() {
+        final Point point = new Point(1, new Point(2, null, null), Arrays.asList(new Point(3, null, null), new Point(4, null, null)));
+
+        assertEquals(2, PathAccessor.compile(Point.class, "next.x").get(point));
+        assertEquals(Arrays.asList(3, 4), PathAccessor.compile(Point.class, "children.x").getAll(point));
+        assertEquals(
+                PathExtractor.getPath(Point.class, p -> p.next().x()),
+                PathAccessor.compile(Point.class, "next.x").getPath()
+        );
+    }
+
+    @Test
+    public void fieldAccess() {
+        final Point point = new Point(1, new Point(2, null, null), singletonList(new Point(3, null, null)));
+        final PathAccessor byFields = PathAccessor.compile(Point.class, "children.x", PathAccessor.Access.FIELDS);
+
+        assertEquals(PathAccessor.Access.FIELDS, byFields.getAccess());
+        assertEquals(int.class, byFields.getValueType());
+        assertEquals(singletonList(3), byFields.getAll(point));
+        // fields are read as is, getters may compute the value
+        assertEquals(0, PathAccessor.compile(Point.class, "secret", PathAccessor.Access.FIELDS).get(point));
+        assertEquals(42, PathAccessor.compile(Point.class, "secret").get(point));
+        // no field, read with the getter
+        assertEquals("1", PathAccessor.compile(Point.class, "label", PathAccessor.Access.FIELDS).get(point));
+    }
+
+    @Test
+    public void fieldAccessThroughLibraryTypes() {
+        final Event event = new Event(LocalDate.of(2013, 4, 26));
+        // fields of library types may be closed, then they are read with getters
+        final PathAccessor year = PathAccessor.compile(Event.class, "date.year", PathAccessor.Access.FIELDS);
+
+        assertEquals(int.class, year.getValueType());
+        assertEquals(2013, year.get(event));
+    }
+
+    public static class Event {
+        private final LocalDate date;
+
+        Event(final LocalDate date) {
+            this.date = date;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+    }
+
+    public static class Point {
+        private int x;
+        private Point next;
+        private List<Point> children;
+        private int secret;
+
+        public Point() {
+        }
+
+        Point(final int x, final Point next, final List<Point> children) {
+            this.x = x;
+            this.next = next;
+            this.children = children;
+        }
+
+        public int x() {
+            return x;
+        }
+
+        public Point next() {
+            return next;
+        }
+
+        public List<Point> children() {
+            return children;
+        }
+
+        public int getSecret() {
+            return secret + 42;
+        }
+
+        public String getLabel() {
+            return String.valueOf(x);
+        }
+    }
+}
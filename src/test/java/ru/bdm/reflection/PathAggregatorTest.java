@@ -0,0 +1,259 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.beanutils.PropertyUtils.getProperty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PathAggregatorTest {
+
+    private final List<Order> orders = Arrays.asList(
+            new Order(new Customer("north"), new Line(10.5, 1), new Line(2, 3)),
+            new Order(new Customer("south"), new Line(1, 7)),
+            new Order(new Customer("north")),
+            new Order(null, new Line(4, 2))
+    );
+
+    @Test
+    public void aggregate() {
+        final PathAggregator<Order> aggregator = PathAggregator.of(Order.class)
+                .count().count("lines.amount").sum("lines.amount").sum("lines.quantity")
+                .min("lines.quantity").max("lines.amount").avg("lines.quantity");
+
+        final List<PathAggregator.Group> groups = aggregator.aggregate(orders);
+
+        assertEquals(1, groups.size());
+        final PathAggregator.Group total = groups.get(0);
+        assertEquals(Collections.emptyList(), total.getKey());
+        assertEquals(4L, total.getValue(0));
+        assertEquals(4L, total.getValue(1));
+        assertEquals(17.5, total.getDouble(2), 0);
+        assertEquals(13L, total.getValue(3));
+        assertEquals(1L, total.getLong(4));
+        assertEquals(10.5, total.getValue(5));
+        assertEquals(3.25, total.getDouble(6), 0);
+        assertEquals(
+                Arrays.asList("count()", "count(lines.amount)", "sum(lines.amount)", "sum(lines.quantity)",
+                        "min(lines.quantity)", "max(lines.amount)", "avg(lines.quantity)"),
+                aggregator.getAggregates()
+        );
+        assertEquals(aggregator.getAggregates(), new ArrayList<>(total.getValues().keySet()));
+    }
+
+    @Test
+    public void groupBy() {
+        final List<PathAggregator.Group> groups = PathAggregator.of(Order.class)
+                .groupBy("customer.region")
+                .count().sum("lines.quantity").max("lines.amount")
+                .aggregate(new LinkedList<>(orders));
+
+        assertEquals(3, groups.size());
+        assertEquals(Collections.singletonList("north"), groups.get(0).getKey());
+        assertEquals(2L, groups.get(0).getValue(0));
+        assertEquals(4L, groups.get(0).getValue(1));
+        assertEquals(10.5, groups.get(0).getValue(2));
+        assertEquals(Collections.singletonList("south"), groups.get(1).getKey());
+        assertEquals(7L, groups.get(1).getValue(1));
+        assertEquals(Collections.singletonList(null), groups.get(2).getKey());
+        assertEquals(2L, groups.get(2).getValue(1));
+    }
+
+    @Test
+    public void noValues() {
+        final PathAggregator.Group group = PathAggregator.of(Order.class)
+                .sum("lines.quantity").min("lines.amount").avg("lines.amount")
+                .aggregate(Collections.singletonList(new Order(null))).get(0);
+
+        assertEquals(0L, group.getValue(0));
+        assertNull(group.getValue(1));
+        assertNull(group.getValue(2));
+        assertTrue(Double.isNaN(group.getDouble(2)));
+        assertTrue(PathAggregator.of(Order.class).groupBy("customer.region").count()
+                .aggregate(Collections.<Order>emptyList()).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notNumeric() {
+        PathAggregator.of(Order.class).sum("customer.region");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notIntegral() {
+        PathAggregator.of(Order.class).sum("lines.amount").aggregate(orders).get(0).getLong(0);
+    }
+
+    @Test
+    public void aggregateParallel() {
+        final List<Order> many = orders(100000);
+        final PathAggregator<Order> aggregator = PathAggregator.of(Order.class)
+                .groupBy("customer.region")
+                .count().sum("lines.amount").sum("lines.quantity").min("lines.amount").max("lines.quantity")
+                .avg("lines.amount");
+
+        final List<PathAggregator.Group> sequential = aggregator.aggregate(many);
+        final List<PathAggregator.Group> parallel = aggregator.aggregateParallel(many);
+
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getKey(), parallel.get(i).getKey());
+            assertEquals(sequential.get(i).getValue(0), parallel.get(i).getValue(0));
+            assertEquals(sequential.get(i).getDouble(1), parallel.get(i).getDouble(1), 1e-6);
+            assertEquals(sequential.get(i).getValue(2), parallel.get(i).getValue(2));
+            assertEquals(sequential.get(i).getValue(3), parallel.get(i).getValue(3));
+            assertEquals(sequential.get(i).getValue(4), parallel.get(i).getValue(4));
+            assertEquals(sequential.get(i).getDouble(5), parallel.get(i).getDouble(5), 1e-9);
+        }
+        assertEquals("region0", sequential.get(0).getKey().get(0));
+    }
+
+    @Test
+    public void aggregateParallelHighCardinality() {
+        final List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            customers.add(new Customer("region" + i));
+        }
+        final List<Order> many = new ArrayList<>();
+        for (int i = 0; i < 1000000; i++) {
+            many.add(new Order(customers.get(i * 7 % customers.size()), new Line(i % 3, i % 5)));
+        }
+        final PathAggregator<Order> aggregator = PathAggregator.of(Order.class)
+                .groupBy("customer.region")
+                .count().sum("lines.quantity").max("lines.amount");
+
+        final List<PathAggregator.Group> sequential = aggregator.aggregate(many);
+        final List<PathAggregator.Group> parallel = aggregator.aggregateParallel(many);
+
+        assertEquals(100000, parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getKey(), parallel.get(i).getKey());
+            assertEquals(10L, parallel.get(i).getValue(0));
+            assertEquals(sequential.get(i).getValue(1), parallel.get(i).getValue(1));
+            assertEquals(sequential.get(i).getValue(2), parallel.get(i).getValue(2));
+        }
+    }
+
+    @Test
+    public void performanceTest() throws Exception {
+        final List<Order> many = orders(1000000);
+        final PathAggregator<Order> aggregator = PathAggregator.of(Order.class)
+                .groupBy("customer.region")
+                .sum("lines.amount");
+        for (int i = 0; i < 3; i++) {
+            aggregator.aggregate(many);
+            aggregator.aggregateParallel(many);
+        }
+
+        final long b0 = allocatedBytes();
+        long t0 = System.currentTimeMillis();
+
+        final List<PathAggregator.Group> groups = aggregator.aggregate(many);
+
+        long t1 = System.currentTimeMillis();
+        final long b1 = allocatedBytes();
+
+        aggregator.aggregateParallel(many);
+
+        long t2 = System.currentTimeMillis();
+
+        final Map<Object, Double> sums = new HashMap<>();
+        for (final Order order : many) {
+            final Object region = getProperty(order, "customer.region");
+            @SuppressWarnings("unchecked") final List<Line> lines = (List<Line>) getProperty(order, "lines");
+            sums.merge(region, lines.stream().map(line -> {
+                try {
+                    return (Double) getProperty(line, "amount");
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).collect(Collectors.summingDouble(Double::doubleValue)), Double::sum);
+        }
+
+        long t3 = System.currentTimeMillis();
+
+        System.out.println("aggregateTime: " + (t1 - t0) + " allocatedBytes: " + (b1 - b0));
+        System.out.println("aggregateParallelTime: " + (t2 - t1));
+        System.out.println("beanUtilsStreamTime: " + (t3 - t2));
+        for (final PathAggregator.Group group : groups) {
+            assertEquals(sums.get(group.getKey().get(0)), group.getDouble(0), 1e-3);
+        }
+        // groups and their keys only, nothing per row
+        assertTrue("allocated " + (b1 - b0), b1 - b0 < 64 * 1024);
+    }
+
+    private static List<Order> orders(final int count) {
+        final List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            customers.add(new Customer("region" + i % 10));
+        }
+        final List<Order> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new Order(customers.get(i % customers.size()), new Line(i % 100 / 4.0, i % 7), new Line(1.5, 1)));
+        }
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static class Order {
+        private final Customer customer;
+        private final List<Line> lines;
+
+        Order(final Customer customer, final Line... lines) {
+            this.customer = customer;
+            this.lines = Arrays.asList(lines);
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        public List<Line> getLines() {
+            return lines;
+        }
+    }
+
+    public static class Customer {
+        private final String region;
+
+        Customer(final String region) {
+            this.region = region;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+    }
+
+    public static class Line {
+        private final double amount;
+        private final int quantity;
+
+        Line(final double amount, final int quantity) {
+            this.amount = amount;
+            this.quantity = quantity;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+}
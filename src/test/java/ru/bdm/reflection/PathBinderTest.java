@@ -0,0 +1,246 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static java.util.Collections.singletonMap;
+import static org.apache.commons.beanutils.BeanUtils.populate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathAccessorTest.human;
+import static ru.bdm.reflection.PathAccessorTest.pet;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+
+public class PathBinderTest {
+
+    @Test
+    public void createsIntermediates() {
+        final Map<String, Object> row = new HashMap<>();
+        row.put("name", "rex");
+        row.put("owner.name", "john");
+        row.put("owner.birth", new Date(1));
+
+        final Pet pet = PathBinder.bind(Pet.class, row);
+
+        assertEquals("rex", pet.getName());
+        assertEquals("john", pet.getOwner().getName());
+        assertEquals(new Date(1), pet.getOwner().getBirth());
+        assertSame(PathBinder.compile(Pet.class, row.keySet()), PathBinder.compile(Pet.class, new ArrayList<>(row.keySet())));
+    }
+
+    @Test
+    public void collectionHops() {
+        final Map<String, Object> row = new HashMap<>();
+        row.put("owner.relatives.name", Arrays.asList("ann", "bob"));
+        row.put("owner.relatives.birth", new Date[]{new Date(1)});
+        row.put("owner.relatives.relatives.name", Arrays.asList(Arrays.asList("kid"), null));
+
+        final Pet pet = PathBinder.bind(Pet.class, row);
+
+        final List<Human> relatives = pet.getOwner().getRelatives();
+        assertEquals(2, relatives.size());
+        assertEquals("ann", relatives.get(0).getName());
+        assertEquals(new Date(1), relatives.get(0).getBirth());
+        assertEquals("kid", relatives.get(0).getRelatives().get(0).getName());
+        assertEquals("bob", relatives.get(1).getName());
+        assertNull(relatives.get(1).getBirth());
+        assertNull(relatives.get(1).getRelatives());
+    }
+
+    @Test
+    public void existingObjectsAreReused() {
+        final Human ann = human("ann", null);
+        final Pet pet = pet("rex", human("john", null, ann));
+        pet.getOwner().setRelatives(new ArrayList<>(pet.getOwner().getRelatives()));
+        final Human owner = pet.getOwner();
+        final PathBinder<Pet> binder = PathBinder.compile(Pet.class, Arrays.asList("owner.name", "owner.relatives.name"));
+
+        binder.bind(singletonMap("owner.relatives.name", Arrays.asList("anna", "bob")), pet);
+
+        assertSame(owner, pet.getOwner());
+        assertEquals("john", owner.getName());
+        assertSame(ann, owner.getRelatives().get(0));
+        assertEquals("anna", ann.getName());
+        assertEquals("bob", owner.getRelatives().get(1).getName());
+    }
+
+    @Test
+    public void setHops() {
+        final Map<String, Object> row = new HashMap<>();
+        row.put("tags.name", Arrays.asList("b", "a", "c"));
+        row.put("sorted.name", Arrays.asList("b", "a", "c"));
+
+        final Tagged tagged = PathBinder.bind(Tagged.class, row);
+
+        assertEquals(3, tagged.getTags().size());
+        assertTrue(tagged.getTags().contains(new Tag("a")));
+        assertEquals(Arrays.asList(new Tag("a"), new Tag("b"), new Tag("c")), new ArrayList<>(tagged.getSorted()));
+
+        final Tag x = new Tag("x");
+        tagged.getSorted().clear();
+        tagged.getSorted().add(x);
+        PathBinder.compile(Tagged.class, Arrays.asList("sorted.name"))
+                .bind(singletonMap("sorted.name", Arrays.asList("z", "a")), tagged);
+
+        assertEquals(Arrays.asList(new Tag("a"), new Tag("z")), new ArrayList<>(tagged.getSorted()));
+        assertSame(x, tagged.getSorted().last());
+    }
+
+    @Test
+    public void conversion() {
+        final Map<String, Object> row = new HashMap<>();
+        row.put("count", "42");
+        row.put("name", 7);
+
+        final Counter counter = PathBinder.bind(Counter.class, row);
+
+        assertEquals(42, counter.getCount());
+        assertEquals("7", counter.getName());
+
+        PathBinder.compile(Counter.class, row.keySet()).bind(singletonMap("count", null), counter);
+        assertEquals(42, counter.getCount());
+    }
+
+    @Test
+    public void fieldAccess() {
+        final Map<String, Object> row = new HashMap<>();
+        row.put("x", 1);
+        row.put("next.x", "2");
+        row.put("children.x", new int[]{3, 4});
+
+        final PathAccessorTest.Point point = PathBinder.compile(
+                PathAccessorTest.Point.class, row.keySet(), PathAccessor.Access.FIELDS
+        ).bind(row);
+
+        assertEquals(1, point.x());
+        assertEquals(2, point.next().x());
+        assertEquals(Arrays.asList(3, 4), PathAccessor.compile(PathAccessorTest.Point.class, "children.x").getAll(point));
+    }
+
+    @Test(expected = PathExtractor.PropertyNotFound.class)
+    public void readOnlyWithGetters() {
+        PathBinder.compile(PathAccessorTest.Point.class, Arrays.asList("x"));
+    }
+
+    @Test(expected = PathExtractor.PropertyNotFound.class)
+    public void unknownPath() {
+        PathBinder.compile(Pet.class, Arrays.asList("owner.nickname"));
+    }
+
+    @Test
+    public void bindPerformanceTest() throws Exception {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            final Map<String, Object> row = new HashMap<>();
+            row.put("name", "pet" + i);
+            row.put("owner.name", "owner" + i);
+            row.put("owner.birth", new Date(i));
+            rows.add(row);
+        }
+
+        long t0 = System.currentTimeMillis();
+
+        final List<Pet> bound = PathBinder.compile(Pet.class, rows.get(0).keySet()).bindAll(rows);
+
+        long t1 = System.currentTimeMillis();
+
+        for (final Map<String, Object> row : rows) {
+            populate(new Pet(), row);
+        }
+
+        long t2 = System.currentTimeMillis();
+
+        assertEquals("owner99999", bound.get(99999).getOwner().getName());
+        System.out.println("pathBinderTime: " + (t1 - t0));
+        System.out.println("beanUtilsPopulateTime: " + (t2 - t1));
+    }
+
+    public static class Tagged {
+        private Set<Tag> tags;
+        private SortedSet<Tag> sorted = new TreeSet<>();
+
+        public Set<Tag> getTags() {
+            return tags;
+        }
+
+        public void setTags(final Set<Tag> tags) {
+            this.tags = tags;
+        }
+
+        public SortedSet<Tag> getSorted() {
+            return sorted;
+        }
+
+        public void setSorted(final SortedSet<Tag> sorted) {
+            this.sorted = sorted;
+        }
+    }
+
+    public static class Tag implements Comparable<Tag> {
+        private String name;
+
+        public Tag() {
+        }
+
+        Tag(final String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public int compareTo(final Tag that) {
+            return name.compareTo(that.name);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Tag && Objects.equals(name, ((Tag) obj).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(name);
+        }
+    }
+
+    public static class Counter {
+        private int count;
+        private String name;
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(final int count) {
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+    }
+}
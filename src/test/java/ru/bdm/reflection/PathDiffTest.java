@@ -0,0 +1,113 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathAccessorTest.Point;
+import static ru.bdm.reflection.PathAccessorTest.human;
+import static ru.bdm.reflection.PathAccessorTest.pet;
+import static ru.bdm.reflection.PathAggregatorTest.Line;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+
+public class PathDiffTest {
+
+    private final PathDiff<Pet> diff = new PathDiff<>(Pet.class, "name", "owner.name", "owner.relatives.birth");
+
+    @Test
+    public void equalObjects() {
+        final Pet left = pet("rex", human("john", null, human("ann", new Date(1))));
+        final Pet right = pet("rex", human("john", null, human("ann", new Date(1))));
+
+        assertFalse(diff.isChanged(left, right));
+        assertSame(emptyList(), diff.diff(left, right));
+    }
+
+    @Test
+    public void changedPaths() {
+        final Pet left = pet("rex", human("john", null, human("ann", new Date(1))));
+
+        assertEquals(singletonList("name"), diff.diff(left, pet("max", human("john", null, human("ann", new Date(1))))));
+        assertEquals(
+                Arrays.asList("owner.name", "owner.relatives.birth"),
+                diff.diff(left, pet("rex", human("jane", null, human("ann", new Date(2)))))
+        );
+        assertEquals(
+                singletonList("owner.relatives.birth"),
+                diff.diff(left, pet("rex", human("john", null, human("ann", new Date(1)), human("bob", null))))
+        );
+        assertEquals(Arrays.asList("owner.name", "owner.relatives.birth"), diff.diff(left, pet("rex", null)));
+        assertEquals(Arrays.asList("name", "owner.name", "owner.relatives.birth"), diff.diff(left, null));
+        assertTrue(diff.isChanged(null, left));
+    }
+
+    @Test
+    public void batch() {
+        final List<Pet> left = Arrays.asList(pet("rex", null), pet("tom", human("john", null)));
+        final List<Pet> right = new LinkedList<>(Arrays.asList(pet("rex", null), pet("tom", human("jane", null))));
+
+        assertEquals(Arrays.asList(emptyList(), singletonList("owner.name")), diff.diffAll(left, right));
+        assertTrue(diff.isAnyChanged(left, right));
+        assertFalse(diff.isAnyChanged(left.subList(0, 1), right.subList(0, 1)));
+    }
+
+    @Test
+    public void primitivePaths() {
+        final PathDiff<Point> points = new PathDiff<>(Point.class, "x", "next.x", "children.x");
+        final Point point = new Point(1, new Point(2, null, null), singletonList(new Point(3, null, null)));
+
+        assertFalse(points.isChanged(point, new Point(1, new Point(2, null, null), singletonList(new Point(3, null, null)))));
+        assertEquals(
+                Arrays.asList("next.x", "children.x"),
+                points.diff(point, new Point(1, new Point(4, null, null), singletonList(new Point(5, null, null))))
+        );
+        assertEquals(Arrays.asList("next.x", "children.x"), points.diff(point, new Point(1, null, null)));
+        assertSame(emptyList(), points.diff(new Point(1, null, null), new Point(1, null, null)));
+
+        final PathDiff<Line> lines = new PathDiff<>(Line.class, "amount", "quantity");
+        assertFalse(lines.isChanged(new Line(Double.NaN, 1), new Line(Double.NaN, 1)));
+        assertEquals(singletonList("amount"), lines.diff(new Line(0.0, 1), new Line(-0.0, 1)));
+    }
+
+    @Test
+    public void unchangedObjectsAllocateNothing() {
+        final PathDiff<Point> points = new PathDiff<>(Point.class, "x", "next.x", "children.x", "children.next");
+        final List<Point> left = new ArrayList<>();
+        final List<Point> right = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            left.add(new Point(i, new Point(i * 1000, null, null), Arrays.asList(new Point(i, null, null), new Point(-i, null, null))));
+            right.add(new Point(i, new Point(i * 1000, null, null), Arrays.asList(new Point(i, null, null), new Point(-i, null, null))));
+        }
+        for (int i = 0; i < 3; i++) {
+            points.isAnyChanged(left, right);
+        }
+
+        final long b0 = allocatedBytes();
+        final boolean changed = points.isAnyChanged(left, right);
+        final long b1 = allocatedBytes();
+
+        assertFalse(changed);
+        assertTrue("allocated " + (b1 - b0), b1 - b0 < 64 * 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void differentSizes() {
+        diff.diffAll(singletonList(pet("rex", null)), emptyList());
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
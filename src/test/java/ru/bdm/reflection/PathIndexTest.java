@@ -0,0 +1,86 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathAccessorTest.human;
+import static ru.bdm.reflection.PathAccessorTest.pet;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+import static ru.bdm.reflection.PathIndex.key;
+
+public class PathIndexTest {
+
+    private final Date first = new Date(1);
+    private final Date second = new Date(2);
+    private final Human john = human("john", null, human("ann", first), human("bob", second));
+    private final Human jane = human("jane", null, human("kate", second));
+    private final Pet rex = pet("rex", john);
+    private final Pet tom = pet("tom", jane);
+    private final Pet max = pet("max", john);
+
+    @Test
+    public void singlePath() {
+        final PathIndex<Pet, String> index = PathIndex.build(Pet.class, Arrays.asList(rex, tom, max), "owner.name");
+
+        assertEquals(Arrays.asList(rex, max), index.get("john"));
+        assertSame(tom, index.getFirst("jane"));
+        assertEquals(emptyList(), index.get("nobody"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void multiValuedPath() {
+        final PathIndex<Pet, Date> index = PathIndex.build(Pet.class, Arrays.asList(rex, tom), "owner.relatives.birth");
+
+        assertEquals(singletonList(rex), index.get(first));
+        assertEquals(Arrays.asList(rex, tom), index.get(second));
+    }
+
+    @Test
+    public void compositeKey() {
+        final PathIndex<Pet, List<Object>> index = PathIndex.build(
+                Pet.class, Arrays.asList(rex, tom, max), "owner.name", "owner.relatives.birth"
+        );
+
+        assertEquals(Arrays.asList(rex, max), index.get(key("john", second)));
+        assertEquals(singletonList(tom), index.get(key("jane", second)));
+        assertFalse(index.containsKey(key("jane", first)));
+    }
+
+    @Test
+    public void addRemove() {
+        final PathIndex<Pet, String> index = new PathIndex<>(Pet.class, "name");
+        index.add(rex);
+        index.add(tom);
+
+        assertTrue(index.remove(rex));
+        assertFalse(index.remove(rex));
+        assertFalse(index.containsKey("rex"));
+        assertEquals(singletonList(tom), index.get("tom"));
+    }
+
+    @Test
+    public void buildParallel() {
+        final List<Pet> pets = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            pets.add(pet("pet" + i, i % 2 == 0 ? john : jane));
+        }
+
+        final PathIndex<Pet, String> parallel = PathIndex.buildParallel(Pet.class, pets, "owner.name");
+        final PathIndex<Pet, String> sequential = PathIndex.build(Pet.class, pets, "owner.name");
+
+        assertEquals(sequential.get("john"), parallel.get("john"));
+        assertEquals(sequential.get("jane"), parallel.get("jane"));
+    }
+}
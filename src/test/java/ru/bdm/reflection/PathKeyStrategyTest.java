@@ -0,0 +1,246 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathAccessorTest.Point;
+import static ru.bdm.reflection.PathAccessorTest.human;
+import static ru.bdm.reflection.PathAccessorTest.pet;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+
+public class PathKeyStrategyTest {
+
+    private final PathKeyStrategy<Pet> strategy = new PathKeyStrategy<>(Pet.class, "name", "owner.name");
+
+    @Test
+    public void equalsAndHashCode() {
+        final Pet rex = pet("rex", human("john", null));
+
+        assertTrue(strategy.equals(rex, pet("rex", human("john", null))));
+        assertEquals(strategy.hashCode(rex), strategy.hashCode(pet("rex", human("john", null))));
+        assertFalse(strategy.equals(rex, pet("rex", human("jane", null))));
+        assertFalse(strategy.equals(rex, pet("rex", null)));
+        assertTrue(strategy.equals(pet("rex", null), pet("rex", human(null, null))));
+        assertEquals(strategy.hashCode(pet("rex", null)), strategy.hashCode(pet("rex", human(null, null))));
+        assertEquals(31 * (31 + "rex".hashCode()) + "john".hashCode(), strategy.hashCode(rex));
+    }
+
+    @Test
+    public void primitivePath() {
+        final PathKeyStrategy<Point> next = new PathKeyStrategy<>(Point.class, "next.x", "x");
+        final Point point = new Point(1, new Point(2, null, null), null);
+
+        assertTrue(next.equals(point, new Point(1, new Point(2, null, null), null)));
+        assertEquals(next.hashCode(point), next.hashCode(new Point(1, new Point(2, null, null), null)));
+        assertEquals(31 * (31 + 2) + 1, next.hashCode(point));
+        assertFalse(next.equals(point, new Point(1, new Point(3, null, null), null)));
+        assertFalse(next.equals(point, new Point(1, null, null)));
+        assertFalse(next.equals(new Point(1, null, null), point));
+        assertTrue(next.equals(new Point(1, null, null), new Point(1, null, null)));
+        assertEquals(31 * 31 + 1, next.hashCode(new Point(1, null, null)));
+    }
+
+    @Test
+    public void multiValuedPath() {
+        final PathKeyStrategy<Human> relatives = new PathKeyStrategy<>(Human.class, "relatives.name");
+        final Human john = human("john", null, human("ann", null), human("bob", null));
+        final Human jane = human("jane", null, human("ann", null), human("bob", null));
+
+        assertTrue(relatives.equals(john, jane));
+        assertEquals(relatives.hashCode(john), relatives.hashCode(jane));
+        assertFalse(relatives.equals(john, human("jack", null, human("bob", null), human("ann", null))));
+        assertNotEquals(relatives.hashCode(john), relatives.hashCode(human("jack", null, human("ann", null))));
+    }
+
+    @Test
+    public void distinct() {
+        final Pet first = pet("rex", human("john", null));
+        final Pet other = pet("rex", human("jane", null));
+
+        assertEquals(
+                Arrays.asList(first, other),
+                strategy.distinct(Arrays.asList(first, other, pet("rex", human("john", null)), other))
+        );
+    }
+
+    @Test
+    public void set() {
+        final PathHashSet<Pet> set = new PathHashSet<>(strategy);
+        final Pet rex = pet("rex", human("john", null));
+
+        assertTrue(set.add(rex));
+        assertFalse(set.add(pet("rex", human("john", null))));
+        assertTrue(set.contains(pet("rex", human("john", null))));
+        assertFalse(set.contains(pet("tom", human("john", null))));
+        assertSame(rex, set.get(pet("rex", human("john", null))));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void map() {
+        final PathHashMap<Pet, String> map = new PathHashMap<>(strategy);
+        final Pet rex = pet("rex", human("john", null));
+
+        assertNull(map.put(rex, "first"));
+        assertEquals("first", map.put(pet("rex", human("john", null)), "second"));
+        assertEquals("second", map.get(rex));
+        assertEquals("third", map.computeIfAbsent(pet("tom", null), pet -> "third"));
+        assertEquals("third", map.computeIfAbsent(pet("tom", null), pet -> "fourth"));
+        assertNull(map.get(pet("max", null)));
+        assertEquals(2, map.size());
+        assertSame(rex, map.keys().stream().filter(pet -> pet.getName().equals("rex")).findFirst().orElse(null));
+    }
+
+    @Test
+    public void growth() {
+        final List<Pet> pets = pets(10000, 1000);
+        final PathHashMap<Pet, Integer> map = new PathHashMap<>(strategy);
+        for (int i = 0; i < pets.size(); i++) {
+            final int index = i;
+            map.computeIfAbsent(pets.get(i), pet -> index);
+        }
+
+        final PathCounter<Pet> counter = strategy.count(pets);
+
+        assertEquals(1000, map.size());
+        assertEquals(1000, counter.size());
+        final Map<String, Long> counts = new HashMap<>();
+        counter.forEach((pet, count) -> counts.put(pet.getName() + "/" + pet.getOwner().getName(), count));
+        assertEquals(1000, counts.size());
+        for (int i = 0; i < pets.size(); i++) {
+            final Pet pet = pets.get(i);
+            assertEquals(10, counter.getCount(pet));
+            assertEquals(10L, (long) counts.get(pet.getName() + "/" + pet.getOwner().getName()));
+            assertEquals(i % 1000, (int) map.get(pet));
+        }
+        assertEquals(0, counter.getCount(pet("rex", null)));
+    }
+
+    @Test
+    public void concurrentStrategies() throws Exception {
+        final List<String[]> paths = Arrays.asList(
+                new String[]{"left"}, new String[]{"right"}, new String[]{"next.left"}, new String[]{"next.right"},
+                new String[]{"left", "right"}, new String[]{"right", "left"}, new String[]{"next.left", "left"},
+                new String[]{"next.next.right"}
+        );
+        final Pair pair = new Pair(1, 2, new Pair(3, 4, new Pair(5, 6, null)));
+        final CyclicBarrier barrier = new CyclicBarrier(paths.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(paths.size());
+        try {
+            final List<Future<PathKeyStrategy<Pair>>> futures = new ArrayList<>();
+            for (final String[] path : paths) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return new PathKeyStrategy<>(Pair.class, path);
+                }));
+            }
+            final int[] expected = {31 + 1, 31 + 2, 31 + 3, 31 + 4, 31 * 32 + 2, 31 * 33 + 1, 31 * 34 + 1, 31 + 6};
+            for (int i = 0; i < futures.size(); i++) {
+                final PathKeyStrategy<Pair> strategy = futures.get(i).get();
+                assertEquals(Arrays.asList(paths.get(i)), strategy.getPaths());
+                assertEquals(expected[i], strategy.hashCode(pair));
+                assertTrue(strategy.equals(pair, new Pair(1, 2, new Pair(3, 4, new Pair(5, 6, null)))));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void allocationPerformanceTest() {
+        final List<Pet> pets = pets(1000000, 10000);
+        for (int i = 0; i < 3; i++) {
+            strategy.count(pets);
+            countByStringKey(pets);
+        }
+
+        final long b0 = allocatedBytes();
+        final long t0 = System.currentTimeMillis();
+
+        final PathCounter<Pet> counter = strategy.count(pets);
+
+        final long t1 = System.currentTimeMillis();
+        final long b1 = allocatedBytes();
+
+        final Map<String, Long> counts = countByStringKey(pets);
+
+        final long t2 = System.currentTimeMillis();
+        final long b2 = allocatedBytes();
+
+        System.out.println("pathCounterTime: " + (t1 - t0) + " allocatedBytes: " + (b1 - b0));
+        System.out.println("stringKeyTime: " + (t2 - t1) + " allocatedBytes: " + (b2 - b1));
+        assertEquals(counts.size(), counter.size());
+        // about 1MB for the tables of the counter, nothing per row
+        assertTrue("allocated " + (b1 - b0), b1 - b0 < 8 * 1024 * 1024);
+    }
+
+    private static Map<String, Long> countByStringKey(final List<Pet> pets) {
+        final Map<String, Long> counts = new HashMap<>();
+        for (final Pet pet : pets) {
+            counts.merge(pet.getName() + "|" + pet.getOwner().getName(), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * @return pets with {@code groups} distinct combinations of name and owner name
+     */
+    private static List<Pet> pets(final int count, final int groups) {
+        final List<Human> owners = new ArrayList<>();
+        for (int i = 0; i < groups / 10; i++) {
+            owners.add(human("owner" + i, null));
+        }
+        final List<Pet> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int group = i % groups;
+            result.add(pet("pet" + group % 10, owners.get(group / 10)));
+        }
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static class Pair {
+        private final int left;
+        private final int right;
+        private final Pair next;
+
+        Pair(final int left, final int right, final Pair next) {
+            this.left = left;
+            this.right = right;
+            this.next = next;
+        }
+
+        public int getLeft() {
+            return left;
+        }
+
+        public int getRight() {
+            return right;
+        }
+
+        public Pair getNext() {
+            return next;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathAccessorTest.human;
+import static ru.bdm.reflection.PathAccessorTest.pet;
+import static ru.bdm.reflection.PathExtractorJava8.start;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+import static ru.bdm.reflection.PathPredicate.path;
+
+public class PathPredicateTest {
+
+    private final Pet rex = pet("rex", human("john", null, human("ann", new Date(1)), human("bob", new Date(5))));
+    private final Pet tom = pet("tom", human("jane", null, human("kate", new Date(5))));
+    private final Pet max = pet("max", null);
+    private final List<Pet> pets = Arrays.asList(rex, tom, max);
+
+    @Test
+    public void comparisons() {
+        final String ownerName = start(Pet.class, Pet::getOwner).then(Human::getName).end();
+
+        assertEquals(singletonList(rex), path(Pet.class, ownerName).eq("john").filter(pets));
+        assertEquals(Arrays.asList(tom, max), path(Pet.class, ownerName).ne("john").filter(pets));
+        assertEquals(singletonList(max), path(Pet.class, "owner").isNull().filter(pets));
+        assertEquals(Arrays.asList(rex, tom), path(Pet.class, "name").in("rex", "tom").filter(pets));
+        assertEquals(Arrays.asList(rex, tom), path(Pet.class, "name").gt("pet").filter(pets));
+        assertEquals(singletonList(tom), path(Pet.class, "name").le("tom").and(path(Pet.class, "name").ge("tom")).filter(pets));
+    }
+
+    @Test
+    public void anyAndAll() {
+        final String birth = "owner.relatives.birth";
+
+        assertEquals(singletonList(rex), path(Pet.class, birth).lt(new Date(5)).filter(pets));
+        assertEquals(singletonList(tom), path(Pet.class, birth).all().ge(new Date(5)).and(path(Pet.class, "owner").notNull()).filter(pets));
+        assertEquals(Arrays.asList(tom, max), path(Pet.class, birth).all().ge(new Date(5)).filter(pets));
+    }
+
+    @Test
+    public void junctions() {
+        final PathPredicate<Pet> john = path(Pet.class, "owner.name").eq("john");
+        final PathPredicate<Pet> max = path(Pet.class, "name").eq("max");
+
+        assertEquals(Arrays.asList(rex, this.max), john.or(max).filter(pets));
+        assertEquals(singletonList(tom), john.or(max).not().filter(pets));
+        assertTrue(john.not().not().test(rex));
+        assertFalse(john.and(max).test(rex));
+        assertTrue(john.and(pet -> pet.getName().startsWith("r")).test(rex));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void incomparableValue() {
+        path(Pet.class, "owner.birth").gt(1L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valueOfAnotherType() {
+        path(PathAccessorTest.Point.class, "x").eq(1L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valuesOfAnotherType() {
+        path(Pet.class, "owner.name").in("john", 1);
+    }
+
+    @Test
+    public void filterParallel() {
+        final List<Pet> many = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            many.add(pets.get(i % pets.size()));
+        }
+        final PathPredicate<Pet> predicate = path(Pet.class, "owner.relatives.birth").gt(new Date(1));
+
+        assertEquals(predicate.filter(many), predicate.filterParallel(many));
+    }
+}
@@ -0,0 +1,210 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathAccessorTest.human;
+import static ru.bdm.reflection.PathAccessorTest.pet;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+
+public class PathViewTest {
+
+    private static final Map<String, String> PATHS;
+
+    static {
+        final Map<String, String> paths = new HashMap<>();
+        paths.put("ownerName", "pet.owner.name");
+        paths.put("relatives", "pet.owner.relatives.name");
+        PATHS = Collections.unmodifiableMap(paths);
+    }
+
+    @Test
+    public void create() {
+        final PathView<Sample, SampleView> view = PathView.compile(Sample.class, SampleView.class, PATHS);
+        final Sample sample = new Sample(7, 1.5, true, 'b', 0.25f, 100L,
+                pet("rex", human("john", null, human("ann", null), human("bob", null))));
+
+        final SampleView created = view.create(sample);
+
+        assertEquals(7, created.getCount());
+        assertEquals(1.5, created.getWeight(), 0);
+        assertTrue(created.isActive());
+        assertEquals('b', created.getGrade());
+        assertEquals(0.25f, created.getRatio(), 0);
+        assertEquals(100L, created.total());
+        assertEquals("john", created.getOwnerName());
+        assertEquals(Arrays.asList("ann", "bob"), created.getRelatives());
+        assertSame(view, PathView.compile(Sample.class, SampleView.class, PATHS));
+    }
+
+    @Test
+    public void nullValues() {
+        final SampleView created = PathView.compile(Sample.class, SampleView.class, PATHS)
+                .create(new Sample(0, 0, false, 'a', 0, null, pet("rex", null)));
+
+        assertEquals(0L, created.total());
+        assertFalse(created.isActive());
+        assertNull(created.getOwnerName());
+        assertTrue(created.getRelatives().isEmpty());
+    }
+
+    @Test
+    public void sharedByViewsOfAnotherSource() {
+        final SampleView created = PathView.compile(OtherSample.class, SampleView.class, PATHS)
+                .create(new OtherSample());
+
+        assertEquals(3, created.getCount());
+        assertEquals(SampleView.class, created.getClass().getInterfaces()[0]);
+        assertSame(
+                created.getClass(),
+                PathView.compile(Sample.class, SampleView.class, PATHS)
+                        .create(new Sample(0, 0, false, 'a', 0, null, pet("rex", null))).getClass()
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void typeMismatch() {
+        PathView.compile(Sample.class, MismatchedView.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notAGetter() {
+        PathView.compile(Sample.class, Runnable.class);
+    }
+
+    @Test
+    public void retainedHeapTest() {
+        final PathView<Sample, SampleView> view = PathView.compile(Sample.class, SampleView.class, PATHS);
+        final int count = 100_000;
+
+        final long before = usedHeap();
+        final List<Sample> samples = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            samples.add(new Sample(i, i, i % 2 == 0, 'a', i, (long) i,
+                    pet("pet" + i, human("owner" + i, null, human("relative" + i, null)))));
+        }
+        final long samplesHeap = usedHeap() - before;
+
+        // the views share the values with the samples, so the difference is what the views add to the values;
+        // other tests may leave threads changing the heap, the smallest of a few measurements is taken
+        long viewBytes = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            final long withoutViews = usedHeap();
+            final long start = System.currentTimeMillis();
+            final List<SampleView> views = view.createAll(samples);
+            final long time = System.currentTimeMillis() - start;
+            final long withViews = usedHeap();
+            assertEquals(count, views.size());
+            viewBytes = Math.min(viewBytes, (withViews - withoutViews) / count);
+            System.out.println("views of " + count + " samples created in " + time + "ms");
+        }
+
+        System.out.println("retained by samples: " + samplesHeap / 1024 + "KB, bytes per view: " + viewBytes);
+        // a view and the list of its relatives
+        assertTrue("bytes per view " + viewBytes, viewBytes < 100);
+        assertTrue("retained by views " + viewBytes * count + " of " + samplesHeap, viewBytes * count < samplesHeap / 4);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    public interface SampleView {
+        int getCount();
+
+        double getWeight();
+
+        boolean isActive();
+
+        char getGrade();
+
+        float getRatio();
+
+        long total();
+
+        String getOwnerName();
+
+        List<String> getRelatives();
+    }
+
+    public interface MismatchedView {
+        String getCount();
+    }
+
+    public static class Sample {
+        private final int count;
+        private final double weight;
+        private final boolean active;
+        private final char grade;
+        private final float ratio;
+        private final Long total;
+        private final Pet pet;
+
+        Sample(
+                final int count,
+                final double weight,
+                final boolean active,
+                final char grade,
+                final float ratio,
+                final Long total,
+                final Pet pet
+        ) {
+            this.count = count;
+            this.weight = weight;
+            this.active = active;
+            this.grade = grade;
+            this.ratio = ratio;
+            this.total = total;
+            this.pet = pet;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public char getGrade() {
+            return grade;
+        }
+
+        public float getRatio() {
+            return ratio;
+        }
+
+        public Long getTotal() {
+            return total;
+        }
+
+        public Pet getPet() {
+            return pet;
+        }
+    }
+
+    public static class OtherSample extends Sample {
+        public OtherSample() {
+            super(3, 0, false, 'a', 0, null, pet("rex", null));
+        }
+    }
+}
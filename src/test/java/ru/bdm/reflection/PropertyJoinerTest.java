@@ -2,15 +2,31 @@ package ru.bdm.reflection;
 
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
+import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.apache.commons.beanutils.PropertyUtils.getProperty;
+import static ru.bdm.reflection.PropertyJoiner.BooleanPropertyExtractor;
+import static ru.bdm.reflection.PropertyJoiner.IntPropertyExtractor;
+import static ru.bdm.reflection.PropertyJoiner.JoinedProperty.property;
 import static ru.bdm.reflection.PropertyJoiner.PropertyExtractor;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
 import static ru.bdm.reflection.PropertyJoiner.joinProperties;
 
 /**
@@ -51,11 +67,385 @@ public class PropertyJoinerTest {
         assertEquals("anyPropertyValue", getProperty(dst, "anyProperty"));
     }
 
+    @Test
+    public void testDelegateMode() throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        PropertyJoiner propertyJoiner = new PropertyJoiner(
+                PropertyJoiner.Mode.DELEGATE, (obj, property) -> property + "Value", "first", "second", "joinedName"
+        );
+
+        NamedType src = new NamedType();
+
+        NamedType dst = propertyJoiner.joinProperties(src);
+
+        assertEquals("firstValue", getProperty(dst, "first"));
+        assertEquals("secondValue", getProperty(dst, "second"));
+        assertEquals("joinedNameValue", dst.getJoinedName());
+        assertEquals("anyPropertyValue", dst.getAnyProperty());
+
+        dst.setName("name");
+
+        assertEquals("name", src.getName());
+        assertEquals("name", dst.getName());
+        assertEquals("name", dst.name());
+        assertEquals(src.toString(), dst.toString());
+        assertSame(src, ((PropertyJoiner.DelegateProxy) dst).joined$target());
+    }
+
+    @Test
+    public void testPrimitiveProperties() throws ReflectiveOperationException {
+        PropertyJoiner propertyJoiner = new PropertyJoiner(
+                PropertyJoiner.Mode.DELEGATE,
+                new TypedExtractor(),
+                property("count", int.class),
+                property("total", long.class),
+                property("ratio", double.class),
+                property("active", boolean.class)
+        );
+
+        AnyType dst = propertyJoiner.joinProperties(new AnyType());
+
+        assertSame(int.class, dst.getClass().getMethod("getCount").getReturnType());
+        assertEquals(42, dst.getClass().getMethod("getCount").invoke(dst));
+        assertEquals(5L, dst.getClass().getMethod("getTotal").invoke(dst));
+        assertEquals(0.5, dst.getClass().getMethod("getRatio").invoke(dst));
+        assertEquals(true, dst.getClass().getMethod("isActive").invoke(dst));
+
+        for (PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            PropertyJoiner boxedJoiner = new PropertyJoiner(
+                    mode, (obj, property) -> 7, property("count", int.class), property("name")
+            );
+
+            AnyType boxed = boxedJoiner.joinProperties(new AnyType());
+
+            assertEquals(7, getProperty(boxed, "count"));
+            assertEquals(7, getProperty(boxed, "name"));
+        }
+    }
+
+    @Test
+    public void testArrayProperties() throws ReflectiveOperationException {
+        for (PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            PropertyJoiner propertyJoiner = new PropertyJoiner(
+                    mode,
+                    (obj, property) -> property.equals("codes") ? new int[]{1, 2} : new String[][]{{"a"}},
+                    property("codes", int[].class),
+                    property("names", String[][].class)
+            );
+
+            AnyType dst = propertyJoiner.joinProperties(new AnyType());
+
+            assertSame(int[].class, dst.getClass().getMethod("getCodes").getReturnType());
+            assertSame(String[][].class, dst.getClass().getMethod("getNames").getReturnType());
+            assertTrue(Arrays.equals(new int[]{1, 2}, (int[]) getProperty(dst, "codes")));
+            assertEquals("a", ((String[][]) getProperty(dst, "names"))[0][0]);
+        }
+    }
+
+    @Test
+    public void testNestedProperties() throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            List<String> extracted = new ArrayList<>();
+            PropertyJoiner propertyJoiner = new PropertyJoiner(mode, (obj, property) -> {
+                extracted.add(property);
+                return property + "@" + ((Pet) obj).getName();
+            }, "nick", "owner.fullName", "owner.title");
+
+            Human owner = new Human();
+            owner.setName("john");
+            Pet src = new Pet();
+            src.setName("rex");
+            src.setOwner(owner);
+
+            Pet dst = propertyJoiner.joinProperties(src);
+
+            assertEquals("rex", dst.getName());
+            assertEquals("nick@rex", getProperty(dst, "nick"));
+            assertSame(dst.getOwner(), dst.getOwner());
+            assertEquals("john", dst.getOwner().getName());
+            assertEquals(1, extracted.size());
+            assertEquals("owner.fullName@rex", getProperty(dst, "owner.fullName"));
+            assertEquals("owner.title@rex", getProperty(dst.getOwner(), "title"));
+            assertEquals(asList("nick", "owner.fullName", "owner.title"), extracted);
+
+            Human other = new Human();
+            other.setName("jane");
+            src.setOwner(other);
+
+            assertEquals("jane", dst.getOwner().getName());
+            assertEquals("owner.title@rex", getProperty(dst.getOwner(), "title"));
+
+            src.setOwner(null);
+
+            assertNull(dst.getOwner());
+            assertNull(propertyJoiner.joinProperties(src).getOwner());
+        }
+    }
+
+    @Test
+    public void testNestedPropertiesOfItems() {
+        for (PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            PropertyJoiner propertyJoiner = new PropertyJoiner(mode, (obj, property) -> "joined", "relatives.nick");
+            try {
+                propertyJoiner.joinProperties(new Human());
+                fail();
+            } catch (final IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("relatives"));
+            }
+        }
+    }
+
+    @Test
+    public void testSetterOfJoinedProperty() {
+        for (PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            Pet src = new Pet();
+            src.setName("rex");
+
+            Pet dst = new PropertyJoiner(mode, (obj, property) -> "joined", "name").joinProperties(src);
+            dst.setName("max");
+
+            assertEquals("max", src.getName());
+            assertEquals("joined", dst.getName());
+        }
+    }
+
+    @Test
+    public void testRepeatedJoinIsFlattened() throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            PropertyJoiner first = new PropertyJoiner(mode, (obj, property) -> property + "1", "first", "second");
+            PropertyJoiner second = new PropertyJoiner(mode, (obj, property) -> property + "2", "second", "third");
+            PropertyJoiner third = new PropertyJoiner(mode, (obj, property) -> property + "3", "fourth");
+
+            AnyType src = new AnyType();
+
+            for (int i = 0; i < 2; i++) {
+                AnyType dst = joinProperties(third.joinProperties(second.joinProperties(first.joinProperties(src))),
+                        Collections.singletonMap("fifth", "fifth4"));
+
+                assertSame(AnyType.class, dst.getClass().getSuperclass());
+                assertEquals("first1", getProperty(dst, "first"));
+                assertEquals("second2", getProperty(dst, "second"));
+                assertEquals("third2", getProperty(dst, "third"));
+                assertEquals("fourth3", getProperty(dst, "fourth"));
+                assertEquals("fifth4", getProperty(dst, "fifth"));
+                assertEquals("anyPropertyValue", dst.getAnyProperty());
+            }
+        }
+    }
+
+    @Test
+    public void testStageReadsPropertyOfPreviousStage() throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            PropertyJoiner price = new PropertyJoiner(mode, (obj, property) -> 100, "price");
+            PropertyJoiner withTax = new PropertyJoiner(mode, (obj, property) -> {
+                try {
+                    return (Integer) getProperty(obj, "price") * 2;
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "withTax");
+            PropertyJoiner total = new PropertyJoiner(mode, (obj, property) -> {
+                try {
+                    return (Integer) getProperty(obj, "withTax") + (Integer) getProperty(obj, "price");
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "total");
+
+            AnyType dst = total.joinProperties(withTax.joinProperties(price.joinProperties(new AnyType())));
+
+            assertSame(AnyType.class, dst.getClass().getSuperclass());
+            assertEquals(100, getProperty(dst, "price"));
+            assertEquals(200, getProperty(dst, "withTax"));
+            assertEquals(300, getProperty(dst, "total"));
+        }
+    }
+
+    @Test
+    public void testConflictingJoinsAreStacked() throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            Human joinedOwner = new Human();
+            joinedOwner.setName("jane");
+            PropertyJoiner nested = new PropertyJoiner(mode, (obj, property) -> property + "@" + ((Pet) obj).getName(), "owner.fullName");
+            PropertyJoiner owner = new PropertyJoiner(mode, (obj, property) -> joinedOwner,
+                    property("owner", Human.class));
+
+            Human realOwner = new Human();
+            realOwner.setName("john");
+            Pet src = new Pet();
+            src.setName("rex");
+            src.setOwner(realOwner);
+
+            Pet ownerOverNested = owner.joinProperties(nested.joinProperties(src));
+            assertSame(joinedOwner, ownerOverNested.getOwner());
+
+            Pet nestedOverOwner = nested.joinProperties(owner.joinProperties(src));
+            assertEquals("jane", nestedOverOwner.getOwner().getName());
+            assertEquals("owner.fullName@rex", getProperty(nestedOverOwner, "owner.fullName"));
+        }
+    }
+
+    @Test
+    public void mapPerformanceTest() throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        int count = 100000;
+
+        List<Map<String, ?>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("first", "first" + i);
+            row.put("second", i);
+            rows.add(row);
+        }
+
+        AnyType src = new AnyType();
+
+        long t0 = System.currentTimeMillis();
+
+        List<AnyType> joined = new ArrayList<>();
+        for (Map<String, ?> row : rows) {
+            joined.add(joinProperties(src, row));
+        }
+
+        long t1 = System.currentTimeMillis();
+
+        System.out.println("mapJoinTime: " + (t1 - t0));
+
+        assertSame(joined.get(0).getClass(), joined.get(count - 1).getClass());
+        assertEquals("first7", getProperty(joined.get(7), "first"));
+        assertEquals(7, getProperty(joined.get(7), "second"));
+        assertEquals("third", getProperty(joinProperties(src, Collections.singletonMap("third", "third")), "third"));
+    }
+
+    @Test
+    public void testJoinAll() throws Exception {
+        final List<String> extracted = Collections.synchronizedList(new ArrayList<>());
+        final PropertyJoiner propertyJoiner = new PropertyJoiner(
+                PropertyJoiner.Mode.DELEGATE, (obj, property) -> {
+                    extracted.add(property);
+                    return ((NamedType) obj).getName();
+                }, "first"
+        );
+        final List<NamedType> src = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            final NamedType named = new NamedType();
+            named.setName("name" + i);
+            src.add(named);
+        }
+
+        final List<NamedType> lazy = propertyJoiner.joinAll(src);
+        assertEquals(5000, lazy.size());
+        assertEquals("name4321", getProperty(lazy.get(4321), "first"));
+        assertEquals(asList("first"), extracted);
+        assertNotSame(lazy.get(0), lazy.get(0));
+
+        final List<NamedType> cached = propertyJoiner.joinAll(new LinkedList<>(src), true);
+        assertSame(cached.get(4999), cached.get(4999));
+        assertEquals("name4999", getProperty(cached.get(4999), "first"));
+
+        final List<Object> names = cached.parallelStream()
+                .map(named -> {
+                    try {
+                        return getProperty(named, "first");
+                    } catch (final Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .collect(Collectors.toList());
+        assertEquals(5000, names.size());
+        assertEquals("name2500", names.get(2500));
+        for (int i = 0; i < cached.size(); i++) {
+            assertSame(cached.get(i), cached.get(i));
+        }
+
+        final List<NamedType> view = propertyJoiner.joinAll(src, true);
+        final NamedType first = view.get(0);
+        final NamedType replacement = new NamedType();
+        replacement.setName("replacement");
+        src.set(0, replacement);
+        assertEquals("replacement", getProperty(view.get(0), "first"));
+        assertNotSame(first, view.get(0));
+        assertSame(view.get(0), view.get(0));
+    }
+
+    @Test
+    public void testFlyweight() throws Exception {
+        for (final PropertyJoiner.Mode mode : PropertyJoiner.Mode.values()) {
+            final PropertyJoiner propertyJoiner = new PropertyJoiner(
+                    mode, (obj, property) -> ((NamedType) obj).getName() + "Joined", "joinedName"
+            );
+            final PropertyJoiner.Flyweight<NamedType> flyweight = propertyJoiner.newFlyweight(NamedType.class);
+            assertNotSame(flyweight, propertyJoiner.newFlyweight(NamedType.class));
+
+            final NamedType first = new NamedType();
+            first.setName("first");
+            final NamedType second = new NamedType();
+            second.setName("second");
+
+            final NamedType proxy = flyweight.bind(first);
+            assertEquals("firstJoined", proxy.getJoinedName());
+            assertSame(proxy, flyweight.bind(second));
+            assertEquals("secondJoined", proxy.getJoinedName());
+            assertEquals("second", proxy.getName());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFlyweightOfAnotherClass() {
+        new PropertyJoiner((obj, property) -> null, "first").newFlyweight(AnyType.class).bind(new NamedType());
+    }
+
+    @Test
+    public void flyweightAllocationPerformanceTest() {
+        final PropertyJoiner propertyJoiner = new PropertyJoiner(
+                PropertyJoiner.Mode.DELEGATE, (obj, property) -> ((NamedType) obj).getName(), "joinedName"
+        );
+        final NamedType[] rows = new NamedType[1000];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new NamedType();
+            rows[i].setName("name" + i);
+        }
+        final int count = 1000000;
+        final PropertyJoiner.Flyweight<NamedType> flyweight = propertyJoiner.newFlyweight(NamedType.class);
+        for (int i = 0; i < count; i++) {
+            doSomething(flyweight.bind(rows[i % rows.length]).getJoinedName());
+            doSomething(propertyJoiner.joinProperties(rows[i % rows.length]).getJoinedName());
+        }
+
+        final long b0 = allocatedBytes();
+        long t0 = System.currentTimeMillis();
+
+        for (int i = 0; i < count; i++) {
+            doSomething(flyweight.bind(rows[i % rows.length]).getJoinedName());
+        }
+
+        long t1 = System.currentTimeMillis();
+        final long b1 = allocatedBytes();
+
+        for (int i = 0; i < count; i++) {
+            doSomething(propertyJoiner.joinProperties(rows[i % rows.length]).getJoinedName());
+        }
+
+        long t2 = System.currentTimeMillis();
+        final long b2 = allocatedBytes();
+
+        System.out.println("flyweightTime: " + (t1 - t0) + " allocatedBytes: " + (b1 - b0));
+        System.out.println("joinPropertiesTime: " + (t2 - t1) + " allocatedBytes: " + (b2 - b1));
+        // nothing per row, only what measuring itself allocates
+        assertTrue("allocated " + (b1 - b0), b1 - b0 < 64 * 1024);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
     @Test
     public void performanceTest() {
         PropertyJoiner propertyJoiner = new PropertyJoiner(
                 (obj, property) -> property + "Value", "first", "second"
         );
+        PropertyJoiner delegatePropertyJoiner = new PropertyJoiner(
+                PropertyJoiner.Mode.DELEGATE, (obj, property) -> property + "Value", "first", "second"
+        );
 
         int count = 100000;
 
@@ -87,24 +477,172 @@ public class PropertyJoinerTest {
 
         long t4 = System.currentTimeMillis();
 
+        List<AnyType> qsWithDelegateJoinedProps = new ArrayList<>();
+        for (AnyType q : qs) {
+            qsWithDelegateJoinedProps.add(delegatePropertyJoiner.joinProperties(q));
+        }
+
+        long t5 = System.currentTimeMillis();
+
+        for (AnyType q : qsWithDelegateJoinedProps) {
+            doSomething(q.getAnyProperty());
+        }
+
+        long t6 = System.currentTimeMillis();
+
         long rawCreateTime = t1 - t0;
         long proxyCreateTime = t2 - t1;
         long proxyIterateTime = t3 - t2;
         long rawIterateTime = t4 - t3;
+        long delegateCreateTime = t5 - t4;
+        long delegateIterateTime = t6 - t5;
 
         System.out.println("proxyCreateTime:" + proxyCreateTime);
         System.out.println("proxyIterateTime: " + proxyIterateTime);
         System.out.println("rawCreateTime: " + rawCreateTime);
         System.out.println("rawIterateTime: " + rawIterateTime);
+        System.out.println("delegateCreateTime: " + delegateCreateTime);
+        System.out.println("delegateIterateTime: " + delegateIterateTime);
+    }
+
+    @Test
+    public void testWithoutDefaultConstructor() throws IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        PropertyJoiner propertyJoiner = new PropertyJoiner(
+                (obj, property) -> property + "Value", "first"
+        );
+
+        NoDefaultConstructorType src = new NoDefaultConstructorType("value");
+        int constructed = NoDefaultConstructorType.constructed;
+
+        NoDefaultConstructorType dst = propertyJoiner.joinProperties(src);
+
+        assertEquals("firstValue", getProperty(dst, "first"));
+        assertEquals("value", dst.getValue());
+        assertEquals(constructed, NoDefaultConstructorType.constructed);
+    }
+
+    @Test
+    public void heavyConstructorPerformanceTest() throws IllegalAccessException, InstantiationException {
+        PropertyJoiner propertyJoiner = new PropertyJoiner(
+                (obj, property) -> property + "Value", "first", "second"
+        );
+
+        int count = 100000;
+
+        Class<?> proxyClass = propertyJoiner.joinProperties(new HeavyType()).getClass();
+        Instantiator<?> instantiator = Instantiator.of(proxyClass);
+
+        List<HeavyType> qs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            qs.add(new HeavyType());
+        }
+
+        long t0 = System.currentTimeMillis();
+
+        for (int i = 0; i < count; i++) {
+            doSomething(proxyClass.newInstance());
+        }
+
+        long t1 = System.currentTimeMillis();
+
+        for (int i = 0; i < count; i++) {
+            doSomething(instantiator.newInstance());
+        }
+
+        long t2 = System.currentTimeMillis();
+
+        for (HeavyType q : qs) {
+            doSomething(propertyJoiner.joinProperties(q));
+        }
+
+        long t3 = System.currentTimeMillis();
+
+        System.out.println("constructorInstantiateTime: " + (t1 - t0));
+        System.out.println("serializationInstantiateTime: " + (t2 - t1));
+        System.out.println("heavyJoinTime: " + (t3 - t2));
     }
 
     private void doSomething(final Object obj) {
         //to prevent optimisation
     }
 
+    public static class TypedExtractor implements IntPropertyExtractor, BooleanPropertyExtractor {
+        @Override
+        public Object get(final Object obj, final String property) {
+            switch (property) {
+                case "total":
+                    return 5L;
+                case "ratio":
+                    return 0.5;
+                default:
+                    throw new UnsupportedOperationException(property + " is taken without boxing");
+            }
+        }
+
+        @Override
+        public int getInt(final Object obj, final String property) {
+            return 42;
+        }
+
+        @Override
+        public boolean getBoolean(final Object obj, final String property) {
+            return true;
+        }
+    }
+
     public static class AnyType {
         public Object getAnyProperty() {
             return "anyPropertyValue";
         }
     }
+
+    public static class NamedType extends AnyType {
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        public String getJoinedName() {
+            return null;
+        }
+
+        String name() {
+            return name;
+        }
+    }
+
+    public static class NoDefaultConstructorType {
+        static int constructed;
+
+        private final String value;
+
+        public NoDefaultConstructorType(final String value) {
+            this.value = value;
+            constructed++;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    public static class HeavyType {
+        private final List<Object> items = new ArrayList<>();
+        private final Map<String, Object> attributes = new HashMap<>();
+
+        public HeavyType() {
+            for (int i = 0; i < 16; i++) {
+                attributes.put("attribute" + i, i);
+            }
+        }
+
+        public int getSize() {
+            return items.size() + attributes.size();
+        }
+    }
 }
@@ -0,0 +1,204 @@
+package ru.bdm.reflection;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.proxy.Enhancer;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.lang3.ClassUtils;
+import org.objectweb.asm.ClassReader;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Human;
+import static ru.bdm.reflection.PathExtractorJava8UsageForHabrahabr.Pet;
+import static ru.bdm.reflection.PropertyJoinerTest.NamedType;
+
+public class ProxyPregeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void classNamesMatchRuntimeClasses() throws Exception {
+        final File output = folder.getRoot();
+
+        ProxyPregenerator.main(new String[]{
+                output.getPath(),
+                "class:" + Pet.class.getName(),
+                "joiner:" + NamedType.class.getName() + ":DELEGATE:first,count/int "
+                        + "joiner:" + NamedType.class.getName() + ":INVOCATION_HANDLER:first"
+        });
+
+        final Object pathProxy = PathExtractor.createProxy(Pet.class, new PathExtractor.Path());
+        final Object relativesProxy = PathExtractor.createCollectionProxy(
+                Human.class.getMethod("getRelatives").getReturnType(), Human.class, new PathExtractor.Path()
+        );
+        final Object delegateProxy = new PropertyJoiner(
+                PropertyJoiner.Mode.DELEGATE,
+                (obj, property) -> 1,
+                PropertyJoiner.JoinedProperty.property("first"),
+                PropertyJoiner.JoinedProperty.property("count", int.class)
+        ).joinProperties(new NamedType());
+        final Object handlerProxy = new PropertyJoiner(
+                PropertyJoiner.Mode.INVOCATION_HANDLER, (obj, property) -> 1, "first"
+        ).joinProperties(new NamedType());
+
+        for (final Class<?> clazz : new Class<?>[]{
+                pathProxy.getClass(),
+                PathExtractor.createProxy(Human.class, new PathExtractor.Path()).getClass(),
+                relativesProxy.getClass(),
+                delegateProxy.getClass(),
+                handlerProxy.getClass()
+        }) {
+            assertTrue(clazz.getName(), classFile(output, clazz.getName()).isFile());
+            for (final Class<?> holder : clazz.getInterfaces()) {
+                if (holder.getName().contains("Holder")) {
+                    assertTrue(holder.getName(), classFile(output, holder.getName()).isFile());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pregeneratedClassesAreLoaded() throws Exception {
+        final ProxyPregenerator pregenerator = new ProxyPregenerator(folder.getRoot());
+
+        long t0 = System.currentTimeMillis();
+
+        pregenerator.addPathProxy(Pet.class);
+        pregenerator.addJoinedProxy(PropertyJoinerTest.AnyType.class, new PropertyJoiner(
+                PropertyJoiner.Mode.DELEGATE, (obj, property) -> 1, "pregenerated"
+        ));
+
+        long t1 = System.currentTimeMillis();
+
+        final BytesClassLoader classLoader = new BytesClassLoader();
+        for (final Map.Entry<String, byte[]> entry : pregenerator.getClasses().entrySet()) {
+            if (!entry.getKey().contains("Holder")) {
+                assertEquals(entry.getKey(), classLoader.define(entry.getKey(), entry.getValue()).getName());
+            }
+        }
+
+        long t2 = System.currentTimeMillis();
+
+        System.out.println("proxyGenerationTime: " + (t1 - t0));
+        System.out.println("pregeneratedProxyLoadTime: " + (t2 - t1));
+    }
+
+    @Test
+    public void pregeneratedClassesAreUsedByChildLoader() throws Exception {
+        final File output = folder.getRoot();
+        ProxyPregenerator.main(new String[]{
+                output.getPath(),
+                "class:" + Pet.class.getName(),
+                "joiner:" + Pet.class.getName() + ":DELEGATE:age/int"
+        });
+
+        // the library, the tests and their dependencies are loaded again, the pregenerated classes come first
+        final List<URL> classpath = new ArrayList<>();
+        classpath.add(output.toURI().toURL());
+        for (final Class<?> clazz : Arrays.asList(
+                PropertyJoiner.class, ProxyPregeneratorTest.class, Enhancer.class, ClassReader.class,
+                ClassUtils.class, ConvertUtils.class
+        )) {
+            classpath.add(clazz.getProtectionDomain().getCodeSource().getLocation());
+        }
+        try (final URLClassLoader classLoader = new URLClassLoader(classpath.toArray(new URL[0]), null)) {
+            @SuppressWarnings("unchecked") final Supplier<List<Class<?>>> proxies = (Supplier<List<Class<?>>>)
+                    classLoader.loadClass(ChildLoaderProxies.class.getName()).getConstructor().newInstance();
+
+            final List<Class<?>> classes = proxies.get();
+            assertEquals(3, classes.size());
+            for (final Class<?> clazz : classes) {
+                assertSame(clazz.getName(), classLoader, clazz.getClassLoader());
+                // classes generated at runtime are defined with the protection domain of cglib
+                assertEquals(clazz.getName(), output.toURI().toURL(), clazz.getProtectionDomain().getCodeSource().getLocation());
+            }
+        }
+    }
+
+    @Test
+    public void collidingProxyNames() throws Exception {
+        // the names of the proxy classes are built from the hash codes of the joined properties
+        assertEquals("aaAa".hashCode(), "aaBB".hashCode());
+        final PropertyJoiner pregeneratedJoiner = new PropertyJoiner((obj, property) -> "pregenerated", "aaAa");
+        final ProxyPregenerator pregenerator = new ProxyPregenerator(folder.getRoot());
+        pregenerator.addJoinedProxy(Colliding.class, pregeneratedJoiner);
+
+        // the pregenerated proxy is found in the class loader of the library, as if it were on the class path
+        String pregenerated = null;
+        for (final Map.Entry<String, byte[]> entry : pregenerator.getClasses().entrySet()) {
+            if (!entry.getKey().contains("Holder")) {
+                pregenerated = entry.getKey();
+                ReflectUtils.defineClass(entry.getKey(), entry.getValue(), PropertyJoiner.class.getClassLoader());
+            }
+        }
+
+        final Colliding colliding = new PropertyJoiner((obj, property) -> "joined", "aaBB").joinProperties(new Colliding());
+        final Colliding joined = pregeneratedJoiner.joinProperties(new Colliding());
+
+        assertEquals("joined", PropertyUtils.getProperty(colliding, "aaBB"));
+        assertNotEquals(pregenerated, colliding.getClass().getName());
+        assertEquals("pregenerated", PropertyUtils.getProperty(joined, "aaAa"));
+        assertEquals(pregenerated, joined.getClass().getName());
+    }
+
+    private static File classFile(final File output, final String className) {
+        return new File(output, className.replace('.', File.separatorChar) + ".class");
+    }
+
+    /**
+     * Creates proxies in the class loader it is loaded with.
+     */
+    public static final class ChildLoaderProxies implements Supplier<List<Class<?>>> {
+        @Override
+        public List<Class<?>> get() {
+            final Class<?> joined = new PropertyJoiner(
+                    PropertyJoiner.Mode.DELEGATE,
+                    (obj, property) -> 1,
+                    PropertyJoiner.JoinedProperty.property("age", int.class)
+            ).joinProperties(new Pet()).getClass();
+            final List<Class<?>> result = new ArrayList<>();
+            result.add(PathExtractor.createProxy(Pet.class, new PathExtractor.Path()).getClass());
+            result.add(joined);
+            for (final Class<?> holder : joined.getInterfaces()) {
+                if (holder.getName().contains("Holder")) {
+                    result.add(holder);
+                }
+            }
+            return result;
+        }
+    }
+
+    public static class Colliding {
+        public String getName() {
+            return "colliding";
+        }
+    }
+
+    private static final class BytesClassLoader extends ClassLoader {
+        BytesClassLoader() {
+            super(ProxyPregeneratorTest.class.getClassLoader());
+        }
+
+        Class<?> define(final String name, final byte[] bytes) throws ClassNotFoundException {
+            defineClass(name, bytes, 0, bytes.length);
+            return Class.forName(name, true, this);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.bdm.reflection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.apache.commons.beanutils.PropertyUtils.getProperty;
+import static org.junit.Assert.assertEquals;
+import static ru.bdm.reflection.PropertyJoiner.Mode;
+import static ru.bdm.reflection.PropertyJoinerTest.NamedType;
+
+public class StreamingPropertyJoinerTest {
+
+    @Test
+    public void joinStreamByWindows() throws Exception {
+        final List<Integer> windowSizes = new ArrayList<>();
+
+        final StreamingPropertyJoiner joiner = new StreamingPropertyJoiner(
+                Mode.DELEGATE,
+                (objects, properties) -> {
+                    windowSizes.add(objects.size());
+                    return objects.stream()
+                            .map(obj -> Collections.singletonMap("first", ((NamedType) obj).getName() + "First"))
+                            .collect(Collectors.toList());
+                },
+                10,
+                "first"
+        );
+
+        final List<NamedType> joined = joiner.<NamedType>joinProperties(IntStream.range(0, 25).mapToObj(i -> {
+            final NamedType namedType = new NamedType();
+            namedType.setName("name" + i);
+            return namedType;
+        })).collect(Collectors.toList());
+
+        assertEquals(25, joined.size());
+        for (int i = 0; i < joined.size(); i++) {
+            assertEquals("name" + i, joined.get(i).getName());
+            assertEquals("name" + i + "First", getProperty(joined.get(i), "first"));
+        }
+        assertEquals(Arrays.asList(10, 10, 5), windowSizes);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failOnMissingValues() {
+        final StreamingPropertyJoiner joiner = new StreamingPropertyJoiner(
+                (objects, properties) -> Collections.<Map<String, ?>>emptyList(),
+                10,
+                "first"
+        );
+
+        joiner.joinProperties(IntStream.range(0, 3).mapToObj(i -> new NamedType())).count();
+    }
+}
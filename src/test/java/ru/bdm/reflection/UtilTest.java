@@ -8,6 +8,7 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNull;
 import static ru.bdm.reflection.Util.getCollectionItemType;
 import static ru.bdm.reflection.Util.getInterfaceParameterType;
+import static ru.bdm.reflection.Util.getPropertyName;
 
 /**
  * User: D.Brusentsov
@@ -84,4 +85,13 @@ public class UtilTest {
         assertEquals(null, getInterfaceParameterType(IfcBase.class, Ifc.class, 0));
         assertEquals(null, getInterfaceParameterType(IfcBase.class, Ifc.class, 1));
     }
+
+    @Test
+    public void getPropertyNameTest() throws NoSuchMethodException {
+        assertEquals("qs", getPropertyName(W.class.getMethod("getQs")));
+        assertEquals("rawList", getPropertyName(W.class.getMethod("setRawList", List.class)));
+        assertEquals("x", getPropertyName(PathAccessorTest.Point.class.getMethod("x")));
+        assertEquals("next", getPropertyName(PathAccessorTest.Point.class.getMethod("next")));
+        assertNull(getPropertyName(Object.class.getMethod("toString")));
+    }
 }